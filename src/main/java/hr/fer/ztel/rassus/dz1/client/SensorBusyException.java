@@ -0,0 +1,14 @@
+package hr.fer.ztel.rassus.dz1.client;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when another sensor client is too busy to serve a request.
+ * Measurements of this sensor should be used on their own instead.
+ */
+public class SensorBusyException extends IOException {
+
+    public SensorBusyException(String message) {
+        super(message);
+    }
+}
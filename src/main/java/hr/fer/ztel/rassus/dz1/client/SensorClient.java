@@ -2,14 +2,21 @@ package hr.fer.ztel.rassus.dz1.client;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import hr.fer.ztel.rassus.dz1.client.export.MeasurementSeriesWriter;
 import hr.fer.ztel.rassus.dz1.client.loader.Loaders;
+import hr.fer.ztel.rassus.dz1.client.loader.MeasurementLoader;
 import hr.fer.ztel.rassus.dz1.client.model.Measurement;
 import hr.fer.ztel.rassus.dz1.client.model.Sensor;
 import hr.fer.ztel.rassus.dz1.client.thread.ServerThread;
+import hr.fer.ztel.rassus.dz1.client.thread.SubscriptionThread;
 import hr.fer.ztel.rassus.dz1.client.util.Cache;
+import hr.fer.ztel.rassus.dz1.client.util.LatencyTracker;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+import hr.fer.ztel.rassus.dz1.client.util.Prefetcher;
 import hr.fer.ztel.rassus.dz1.client.util.Utility;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.log4j.Log4j2;
 import org.apache.http.HttpEntity;
@@ -23,15 +30,30 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Log4j2
 @ToString(onlyExplicitlyIncluded = true)
@@ -40,15 +62,40 @@ public class SensorClient {
 
     /** Fixed URL format string. */
     private static final String SERVER_URL = "http://%s:%d/measurementhost/rest/sensors/";
-    /** Interval between two automatic measurements, in milliseconds. */
+    /** Default interval between two automatic measurements, in milliseconds. */
     private static final long AUTO_MEASURE_SLEEP_MILLIS = 5000;
     /** Maximum amount of time to keep cached instances, in seconds. */
     private static final long MAX_CACHE_SECONDS = 24;
+    /** Time before a measurement cycle in which the closest sensor is asked for a measurement, in milliseconds. */
+    private static final long PREFETCH_LEAD_MILLIS = 500;
+    /** Default maximum age of a prefetched measurement that may still be used, in milliseconds. */
+    private static final long DEFAULT_MAX_PREFETCH_STALENESS_MILLIS = 2 * AUTO_MEASURE_SLEEP_MILLIS;
+    /** Time to wait for the next measurement pushed to a subscription, in milliseconds. */
+    private static final int SUBSCRIPTION_READ_TIMEOUT_MILLIS = 3 * ServerThread.PUSH_INTERVAL_MILLIS;
+    /** Maximum number of measurements kept in each measurement history. */
+    private static final int HISTORY_CAPACITY = 1024;
+    /** Default time to wait for a connection with another sensor, in milliseconds. */
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000;
+    /** Default time to wait for an answer of another sensor, in milliseconds. */
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 2000;
+    /** Percentile of closest sensor latencies after which the backup sensor is asked. */
+    private static final double HEDGE_PERCENTILE = 95;
+    /** Time after which the backup sensor is asked while no latencies are known, in milliseconds. */
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 100;
+    /** Minimum time after which the backup sensor is asked, in milliseconds. */
+    private static final long MIN_HEDGE_DELAY_MILLIS = 10;
+    /** Number of most recent closest sensor latencies kept for hedging. */
+    private static final int LATENCY_TRACKER_CAPACITY = 128;
     /** Maximum number of attempts when retrying a task. */
     private static final int RETRY_LOGIC_ATTEMPTS = 3;
 
+    /** History of measurements generated by this sensor. */
+    @Getter private final transient MeasurementHistory localHistory = new MeasurementHistory(HISTORY_CAPACITY);
+    /** History of measurements averaged with the closest sensor. */
+    @Getter private final transient MeasurementHistory averagedHistory = new MeasurementHistory(HISTORY_CAPACITY);
+
     /** Server thread of this sensor, used for serving other sensors. */
-    private final transient ServerThread serverThread;
+    @Getter private final transient ServerThread serverThread;
     /** Thread that runs the measurement process in a loop. */
     private transient Thread measurementThread;
     /** Runnable job that runs the measurement process in a loop. */
@@ -66,7 +113,7 @@ public class SensorClient {
                 break;
             }
             // Sleep until the new measurement cycle
-            try { Thread.sleep(AUTO_MEASURE_SLEEP_MILLIS); }
+            try { Thread.sleep(getMeasureIntervalMillis()); }
             catch (InterruptedException e) { Thread.currentThread().interrupt(); }
         }
     };
@@ -74,9 +121,51 @@ public class SensorClient {
     /** Closest sensor that is cached temporarily. */
     private transient Cache<Sensor> cachedClosestSensor;
     /** Socket of the closest sensor that is cached temporarily. */
-    private transient Cache<Socket> cachedClosestSensorSocket;
+    private transient volatile Cache<Socket> cachedClosestSensorSocket;
     /** Scheduled executor service for clearing cached connections on expiration. */
     private final transient ScheduledExecutorService cacheExecutorService;
+    /** Scheduled executor service for prefetching measurements of the closest sensor. */
+    private final transient ScheduledExecutorService prefetchExecutorService;
+    /** Prefetcher of measurements of the closest sensor, used in prefetch mode. */
+    @Getter private final transient Prefetcher<Measurement> prefetcher;
+    /** Sensor whose measurements are currently prefetched. */
+    private transient Sensor prefetchedSensor;
+    /** Last known other closest sensor, asked when the closest sensor is slow until it cannot be connected to. */
+    private transient volatile Sensor backupSensor;
+    /** Executor service that runs hedged requests to the closest and backup sensor. */
+    private final transient ExecutorService hedgeExecutorService = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "HedgedRequestThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Recent latencies of the closest sensor, in microseconds. */
+    private final transient LatencyTracker latencyTracker = new LatencyTracker(LATENCY_TRACKER_CAPACITY);
+    /** Number of requests that were hedged to the backup sensor. */
+    private final transient AtomicLong hedgedRequests = new AtomicLong();
+    /** Number of hedged requests answered by the backup sensor first. */
+    private final transient AtomicLong hedgeWins = new AtomicLong();
+    /** Subscription to measurements of the closest sensor, used in push mode. */
+    private transient SubscriptionThread subscriptionThread;
+
+    /**
+     * Mode in which measurements of the closest sensor are obtained.
+     */
+    public enum NeighbourMode {
+        /** Measurement is requested from the closest sensor every cycle. */
+        PULL,
+        /** Closest sensor pushes each new measurement to a subscription. */
+        PUSH,
+        /** Measurement is requested from the closest sensor shortly before every cycle. */
+        PREFETCH
+    }
+
+    @Getter @Setter private volatile NeighbourMode neighbourMode = NeighbourMode.PULL;
+    /** Interval between two automatic measurements, after which the next measurement is prefetched, in milliseconds. */
+    @Getter @Setter private volatile long measureIntervalMillis = AUTO_MEASURE_SLEEP_MILLIS;
+    /** Time to wait for a connection with another sensor, in milliseconds. */
+    @Getter @Setter private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    /** Time to wait for an answer of another sensor, in milliseconds. */
+    @Getter @Setter private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
 
     @Getter @ToString.Include @EqualsAndHashCode.Include private boolean registeredToServer = false;
     @Getter @ToString.Include @EqualsAndHashCode.Include private final Sensor sensor;
@@ -88,8 +177,10 @@ public class SensorClient {
         this.serverIpAddress = serverIpAddress;
         this.serverPort = serverPort;
 
-        this.serverThread = new ServerThread(ipAddress, port);
+        this.serverThread = new ServerThread(ipAddress, port, localHistory, averagedHistory);
         this.cacheExecutorService = Executors.newSingleThreadScheduledExecutor();
+        this.prefetchExecutorService = Executors.newSingleThreadScheduledExecutor();
+        this.prefetcher = new Prefetcher<>(prefetchExecutorService, DEFAULT_MAX_PREFETCH_STALENESS_MILLIS);
     }
 
     public boolean registerToServer() throws IOException {
@@ -134,19 +225,27 @@ public class SensorClient {
     public void shutdown() {
         log.info("Shutting down client for sensor: {}", sensor.getUsername());
         cacheExecutorService.shutdown();
+        prefetchExecutorService.shutdownNow();
+        hedgeExecutorService.shutdownNow();
         stopClientLoop();
+        unsubscribe();
         try { deregisterFromServer(); } catch (IOException connectionClosed) {}
         log.info("Successfully shut down sensor client");
     }
 
-    public void measure() throws IOException {
+    public synchronized void measure() throws IOException {
+        long cycleStart = System.nanoTime();
+
         // Generate measurement
+        MeasurementLoader loader = Loaders.getMeasurementLoader();
         int secondsActive = Math.toIntExact((System.currentTimeMillis() - serverThread.getStartTime()) / 1000);
-        int ordinalNumber = (secondsActive % 100) + 2;
-        log.info("Seconds active: {}s; Ordinal number: {} given by the formula ({} % 100) + 2 = {}",
-                secondsActive, ordinalNumber, secondsActive, ordinalNumber);
-        Measurement measurement = Loaders.getMeasurementLoader().getMeasurement(secondsActive % 100);
+        int measurementCount = loader.size();
+        int ordinalNumber = (secondsActive % measurementCount) + 2;
+        log.info("Seconds active: {}s; Ordinal number: {} given by the formula ({} % {}) + 2 = {}",
+                secondsActive, ordinalNumber, secondsActive, measurementCount, ordinalNumber);
+        Measurement measurement = loader.getMeasurement(serverThread.getSensorId(), secondsActive % measurementCount);
         log.info("Generated measurement: {}", measurement);
+        localHistory.append(System.currentTimeMillis(), measurement);
 
         // Find closest sensor (and make average)
         Sensor closestSensor = getClosestSensor();
@@ -156,7 +255,23 @@ public class SensorClient {
             avgMeasurement = measurement;
         } else {
             log.info("Found closest sensor: {}", closestSensor.getUsername());
-            avgMeasurement = getAverageMeasurement(closestSensor, measurement);
+            if (neighbourMode == NeighbourMode.PUSH) {
+                avgMeasurement = getAverageSubscribedMeasurement(closestSensor, measurement);
+            } else if (neighbourMode == NeighbourMode.PREFETCH) {
+                unsubscribe();
+                avgMeasurement = getAveragePrefetchedMeasurement(closestSensor, measurement);
+                // Prefetch the measurement for the next cycle
+                prefetcher.schedule(() -> fetchMeasurement(closestSensor), measureIntervalMillis - PREFETCH_LEAD_MILLIS);
+            } else {
+                unsubscribe();
+                avgMeasurement = getAverageMeasurement(closestSensor, measurement);
+            }
+        }
+        averagedHistory.append(System.currentTimeMillis(), avgMeasurement);
+        log.info("Measurement cycle in {} mode took {} ms", neighbourMode,
+                (System.nanoTime() - cycleStart) / 1_000_000.0);
+        if (neighbourMode == NeighbourMode.PREFETCH) {
+            log.info("Prefetch stats: {}", prefetcher);
         }
 
         // Loop n times until measurement is successfully sent
@@ -176,32 +291,226 @@ public class SensorClient {
      * @param otherSensor sensor whose measurement is to be fetched
      * @param measurement measurement of this sensor to make an average from
      * @return the average measurement between this sensor and other sensor
-     * @throws IOException in client communication error occurs
      */
     private Measurement getAverageMeasurement(Sensor otherSensor, Measurement measurement) {
-        Socket socket;
-        if (cachedClosestSensorSocket != null && !cachedClosestSensorSocket.isExpired()) {
+        try {
+            return Measurement.average(measurement, fetchMeasurementHedged(otherSensor, backupSensor));
+        } catch (SensorBusyException e) {
+            log.warn(e.getMessage());
+            return measurement;
+        } catch (IOException e) {
+            log.error("Connection error", e);
+            return measurement;
+        }
+    }
+
+    /**
+     * Method that fetches and returns a measurement from <tt>otherSensor</tt>
+     * within the connect and read deadline. If <tt>otherSensor</tt> does not
+     * answer within the {@value #HEDGE_PERCENTILE}th percentile of its recent
+     * latencies, the same request is sent to <tt>backupSensor</tt>. The first
+     * answer is returned and the other request is cancelled.
+     *
+     * @param otherSensor  sensor whose measurement is to be fetched
+     * @param backupSensor sensor that is asked if other sensor is slow, may be <tt>null</tt>
+     * @return the measurement of the sensor that answered first
+     * @throws SensorBusyException if the sensors are too busy to serve the request
+     * @throws IOException if client communication error occurs or the deadline passes
+     */
+    private Measurement fetchMeasurementHedged(Sensor otherSensor, Sensor backupSensor) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis + readTimeoutMillis);
+        if (backupSensor == null || backupSensor.equals(otherSensor)) {
+            Measurement otherMeasurement = fetchMeasurement(otherSensor);
+            latencyTracker.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            return otherMeasurement;
+        }
+
+        CompletionService<Measurement> completionService = new ExecutorCompletionService<>(hedgeExecutorService);
+        AtomicReference<Socket> primarySocket = new AtomicReference<>();
+        AtomicReference<Socket> hedgeSocket = new AtomicReference<>();
+        Future<Measurement> primary = completionService.submit(() -> {
+            Socket socket = getClosestSensorSocket(otherSensor);
+            primarySocket.set(socket);
+            return requestMeasurement(otherSensor, socket);
+        });
+        Future<Measurement> hedge = null;
+        int pending = 1;
+
+        IOException failure = null;
+        try {
+            long hedgeDelay = getHedgeDelayMicros();
+            Future<Measurement> done = completionService.poll(hedgeDelay, TimeUnit.MICROSECONDS);
+            while (true) {
+                if (done == null && hedge == null) {
+                    // Closest sensor is slow or failed, ask the backup sensor
+                    log.info("No answer from {} within {} ms, hedging to {}",
+                            otherSensor.getUsername(), hedgeDelay / 1000.0, backupSensor.getUsername());
+                    hedgedRequests.incrementAndGet();
+                    hedge = completionService.submit(() -> {
+                        Socket backupSocket;
+                        try {
+                            backupSocket = connect(backupSensor);
+                        } catch (IOException e) {
+                            dropBackupSensor(backupSensor);
+                            throw e;
+                        }
+                        try (Socket socket = backupSocket) {
+                            hedgeSocket.set(socket);
+                            return requestMeasurement(backupSensor, socket);
+                        }
+                    });
+                    pending++;
+                }
+                if (done == null) {
+                    long remaining = deadline - System.nanoTime();
+                    done = remaining > 0 ? completionService.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (done == null) {
+                        // Closest sensor did not answer at all, count it as the deadline
+                        if (!primary.isDone()) {
+                            latencyTracker.record(TimeUnit.NANOSECONDS.toMicros(deadline - start));
+                        }
+                        break;
+                    }
+                }
+
+                pending--;
+                try {
+                    Measurement result = done.get();
+                    if (done == primary) {
+                        latencyTracker.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                    } else {
+                        hedgeWins.incrementAndGet();
+                        // Closest sensor is still waited for, its latency is at least the time so far
+                        if (!primary.isDone()) {
+                            latencyTracker.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                        }
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                    if (pending == 0 && hedge != null) break;
+                    done = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching measurement");
+        } finally {
+            // Cancel the requests that have not answered
+            cancel(primary, primarySocket);
+            cancel(hedge, hedgeSocket);
+        }
+
+        throw failure != null ? failure : new SocketTimeoutException("No answer from "
+                + otherSensor.getUsername() + " or " + backupSensor.getUsername() + " before the deadline");
+    }
+
+    /**
+     * Drops the specified backup sensor, which could not be connected to,
+     * unless it has already been replaced.
+     *
+     * @param sensor backup sensor to drop
+     */
+    private void dropBackupSensor(Sensor sensor) {
+        if (sensor.equals(backupSensor)) {
+            log.info("Dropping unreachable backup sensor {}", sensor.getUsername());
+            backupSensor = null;
+        }
+    }
+
+    /**
+     * Cancels the request if it has not finished. Input of its socket is shut
+     * down instead of closing the socket, since closing would wait for the
+     * socket lock held by the request.
+     */
+    private static void cancel(Future<Measurement> request, AtomicReference<Socket> socket) {
+        if (request == null || request.isDone()) return;
+
+        request.cancel(true);
+        Socket s = socket.get();
+        if (s != null) {
+            try { s.shutdownInput(); } catch (IOException ignorable) {}
+        }
+    }
+
+    /**
+     * Method that fetches and returns a measurement from <tt>otherSensor</tt>
+     * over the cached connection.
+     *
+     * @param otherSensor sensor whose measurement is to be fetched
+     * @return the measurement of other sensor
+     * @throws SensorBusyException if other sensor is too busy to serve the request
+     * @throws IOException if client communication error occurs
+     */
+    private Measurement fetchMeasurement(Sensor otherSensor) throws IOException {
+        return requestMeasurement(otherSensor, getClosestSensorSocket(otherSensor));
+    }
+
+    /**
+     * Returns the cached socket of the closest sensor, connecting to
+     * <tt>otherSensor</tt> and caching the socket if it does not exist or is expired.
+     *
+     * @param otherSensor closest sensor
+     * @return the socket connected to the closest sensor
+     * @throws IOException if unable to connect
+     */
+    private Socket getClosestSensorSocket(Sensor otherSensor) throws IOException {
+        Cache<Socket> cachedSocket = cachedClosestSensorSocket;
+        if (cachedSocket != null && !cachedSocket.isExpired()) {
             // Use cached sensor socket, if exists and is not expired
-            socket = cachedClosestSensorSocket.get();
-        } else {
-            // Create a new socket and cache it
-            try {
-                socket = new Socket(otherSensor.getIpAddress(), otherSensor.getPort());
-            } catch (IOException e) {
-                log.warn("Unable to connect to {}", otherSensor);
-                return measurement;
+            return cachedSocket.get();
+        }
+
+        // Create a new socket and cache it
+        Socket socket = connect(otherSensor);
+        cachedSocket = new Cache<>(socket, MAX_CACHE_SECONDS);
+        cachedSocket.onExpiration(cacheExecutorService, () -> {
+            synchronized (socket) {
+                log.info("Closing connection with sensor: {}", otherSensor.getUsername());
+                try { socket.close(); } catch (Exception e) {}
             }
-            cachedClosestSensorSocket = new Cache<>(socket, MAX_CACHE_SECONDS);
-            cachedClosestSensorSocket.onExpiration(cacheExecutorService, () -> {
-                synchronized (socket) {
-                    log.info("Closing connection with sensor: {}", otherSensor.getUsername());
-                    try { socket.close(); } catch (Exception e) {}
-                }
-            });
+        });
+        cachedClosestSensorSocket = cachedSocket;
+        return socket;
+    }
+
+    /**
+     * Connects to <tt>otherSensor</tt> within the connect timeout.
+     *
+     * @param otherSensor sensor to connect to
+     * @return the socket connected to other sensor
+     * @throws IOException if unable to connect
+     */
+    private Socket connect(Sensor otherSensor) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(otherSensor.getIpAddress(), otherSensor.getPort()), connectTimeoutMillis);
+            return socket;
+        } catch (IOException e) {
+            log.warn("Unable to connect to {}", otherSensor);
+            socket.close();
+            throw e;
         }
+    }
 
+    /**
+     * Method that requests and returns a measurement from <tt>otherSensor</tt>
+     * over the specified socket, waiting for the answer at most the read timeout.
+     *
+     * @param otherSensor sensor whose measurement is to be fetched
+     * @param socket      socket connected to other sensor
+     * @return the measurement of other sensor
+     * @throws SensorBusyException if other sensor is too busy to serve the request
+     * @throws IOException if client communication error occurs
+     */
+    private Measurement requestMeasurement(Sensor otherSensor, Socket socket) throws IOException {
         // Lock socket until measurement fetching is finished
         try { synchronized (socket) {
+            socket.setSoTimeout(readTimeoutMillis);
+
             // Initialize input and output
             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
@@ -211,13 +520,98 @@ public class SensorClient {
 
             // Obtain the measurement and convert from json
             String json = in.readLine();
-            Gson gson = new Gson();
-            Measurement otherMeasurement = gson.fromJson(json, Measurement.class);
-
-            return Measurement.average(measurement, otherMeasurement);
+            if (json == null) {
+                throw new IOException("Connection closed by sensor: " + otherSensor.getUsername());
+            }
+            if (json.equals(Utility.BUSY_KEYWORD)) {
+                throw new SensorBusyException("Sensor is busy, using local measurement: " + otherSensor.getUsername());
+            }
+            try {
+                Gson gson = new Gson();
+                return gson.fromJson(json, Measurement.class);
+            } catch (JsonSyntaxException e) {
+                // Connection was cut in the middle of the answer
+                throw new IOException("Malformed measurement from sensor: " + otherSensor.getUsername(), e);
+            }
         } } catch (IOException e) {
-            log.error("Connection error", e);
-            return measurement;
+            // Do not reuse a connection that failed or was closed by other sensor
+            Cache<Socket> cachedSocket = cachedClosestSensorSocket;
+            if (cachedSocket != null && cachedSocket.get() == socket) {
+                cachedClosestSensorSocket = null;
+            }
+            try { socket.close(); } catch (IOException ignorable) {}
+            throw e;
+        }
+    }
+
+    /**
+     * Method that takes the measurement of <tt>otherSensor</tt> prefetched
+     * before this cycle and calculates and returns the average value for all
+     * attributes of a measurement. If the prefetched measurement is absent or
+     * too stale, falls back to {@link #getAverageMeasurement(Sensor, Measurement)}.
+     *
+     * @param otherSensor sensor whose measurement is to be taken
+     * @param measurement measurement of this sensor to make an average from
+     * @return the average measurement between this sensor and other sensor
+     */
+    private Measurement getAveragePrefetchedMeasurement(Sensor otherSensor, Measurement measurement) {
+        if (!otherSensor.equals(prefetchedSensor)) {
+            prefetcher.clear();
+            prefetchedSensor = otherSensor;
+        }
+
+        Measurement otherMeasurement = prefetcher.get();
+        if (otherMeasurement == null) {
+            log.info("No prefetched measurement within {} ms. Requesting measurement...",
+                    prefetcher.getMaxStalenessMillis());
+            return getAverageMeasurement(otherSensor, measurement);
+        }
+
+        return Measurement.average(measurement, otherMeasurement);
+    }
+
+    /**
+     * Method that takes the latest measurement pushed by <tt>otherSensor</tt>
+     * and calculates and returns the average value for all attributes of a
+     * measurement. Subscribes to <tt>otherSensor</tt> if not already subscribed
+     * and falls back to {@link #getAverageMeasurement(Sensor, Measurement)}
+     * while there is no pushed measurement within the maximum staleness of
+     * the prefetcher. A subscription that stays silent for longer than
+     * {@value #SUBSCRIPTION_READ_TIMEOUT_MILLIS} ms ends and is renewed on
+     * the next call.
+     *
+     * @param otherSensor sensor whose measurement is to be taken
+     * @param measurement measurement of this sensor to make an average from
+     * @return the average measurement between this sensor and other sensor
+     */
+    private Measurement getAverageSubscribedMeasurement(Sensor otherSensor, Measurement measurement) {
+        SubscriptionThread subscription = subscriptionThread;
+        if (subscription == null || !subscription.isAlive() || !subscription.getSensor().equals(otherSensor)) {
+            unsubscribe();
+            log.info("Subscribing to measurements of sensor: {}", otherSensor.getUsername());
+            subscription = new SubscriptionThread(otherSensor, connectTimeoutMillis, SUBSCRIPTION_READ_TIMEOUT_MILLIS);
+            subscription.setDaemon(true);
+            subscription.start();
+            subscriptionThread = subscription;
+        }
+
+        Measurement otherMeasurement = subscription.getLatestMeasurement(prefetcher.getMaxStalenessMillis());
+        if (otherMeasurement == null) {
+            log.info("No measurement pushed within {} ms. Requesting measurement...",
+                    prefetcher.getMaxStalenessMillis());
+            return getAverageMeasurement(otherSensor, measurement);
+        }
+
+        return Measurement.average(measurement, otherMeasurement);
+    }
+
+    /**
+     * Cancels the subscription to the closest sensor, if it exists.
+     */
+    private void unsubscribe() {
+        if (subscriptionThread != null) {
+            subscriptionThread.cancel();
+            subscriptionThread = null;
         }
     }
 
@@ -242,6 +636,17 @@ public class SensorClient {
 
             Gson gson = new Gson();
             Sensor sensor = gson.fromJson(json, Sensor.class);
+            Sensor previousSensor = cachedClosestSensor != null ? cachedClosestSensor.getValue() : null;
+            if (previousSensor != null && !previousSensor.equals(sensor)) {
+                // Keep previous closest sensor as backup and drop the connection with it
+                log.info("Closest sensor changed, keeping {} as backup", previousSensor.getUsername());
+                backupSensor = previousSensor;
+                Cache<Socket> cachedSocket = cachedClosestSensorSocket;
+                cachedClosestSensorSocket = null;
+                if (cachedSocket != null && cachedSocket.get() != null) {
+                    try { cachedSocket.get().close(); } catch (IOException ignorable) {}
+                }
+            }
             cachedClosestSensor = new Cache<>(sensor, MAX_CACHE_SECONDS);
             return sensor;
         } catch (JsonSyntaxException e) {
@@ -273,6 +678,68 @@ public class SensorClient {
         }
     }
 
+    /**
+     * Exports the averaged measurement history of this sensor, along with the
+     * time of each measurement, to the specified file in the compact binary
+     * format of {@link MeasurementSeriesWriter}.
+     *
+     * @param file file to which the history is exported
+     * @return the number of exported measurements
+     * @throws IOException if an I/O error occurs
+     */
+    public int exportAveragedHistory(Path file) throws IOException {
+        List<MeasurementHistory.Sample> samples = averagedHistory.getLast(averagedHistory.getCapacity());
+        try (MeasurementSeriesWriter writer = new MeasurementSeriesWriter(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (MeasurementHistory.Sample sample : samples) {
+                writer.write(sample.getTimestamp(), sample.getMeasurement());
+            }
+        }
+
+        log.info("Exported {} measurements to {}", samples.size(), file);
+        return samples.size();
+    }
+
+    /**
+     * Returns the number of requests that were hedged to the backup sensor.
+     *
+     * @return the number of hedged requests
+     */
+    public long getHedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    /**
+     * Returns the number of hedged requests answered by the backup sensor first.
+     *
+     * @return the number of hedged requests won by the backup sensor
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Returns the delay after which a request is hedged to the backup sensor.
+     *
+     * @return the hedge delay, in milliseconds
+     */
+    public long getHedgeDelayMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(getHedgeDelayMicros());
+    }
+
+    /**
+     * Returns the {@value #HEDGE_PERCENTILE}th percentile of recent closest
+     * sensor latencies, but at least {@value #MIN_HEDGE_DELAY_MILLIS} ms, so
+     * that fast answers on a local network are not hedged all the time.
+     *
+     * @return the hedge delay, in microseconds
+     */
+    private long getHedgeDelayMicros() {
+        long delayMicros = latencyTracker.percentile(HEDGE_PERCENTILE,
+                TimeUnit.MILLISECONDS.toMicros(DEFAULT_HEDGE_DELAY_MILLIS));
+        return Math.max(delayMicros, TimeUnit.MILLISECONDS.toMicros(MIN_HEDGE_DELAY_MILLIS));
+    }
+
     /**
      * Starts the client measurement loop in a new thread and
      * runs measurements every n seconds.
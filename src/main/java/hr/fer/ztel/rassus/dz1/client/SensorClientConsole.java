@@ -1,5 +1,6 @@
 package hr.fer.ztel.rassus.dz1.client;
 
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
 import hr.fer.ztel.rassus.dz1.client.util.Utility;
 import lombok.extern.log4j.Log4j2;
 import org.apache.http.conn.HttpHostConnectException;
@@ -8,6 +9,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 @Log4j2
 public class SensorClientConsole {
@@ -75,6 +78,39 @@ public class SensorClientConsole {
                         client.stopClientLoop();
                         break;
 
+                    case "PULL":
+                        client.setNeighbourMode(SensorClient.NeighbourMode.PULL);
+                        break;
+
+                    case "PUSH":
+                        client.setNeighbourMode(SensorClient.NeighbourMode.PUSH);
+                        break;
+
+                    case "PREFETCH":
+                        client.setNeighbourMode(SensorClient.NeighbourMode.PREFETCH);
+                        break;
+
+                    case "HISTORY":
+                        client.getAveragedHistory().getLast(10).forEach(System.out::println);
+                        for (MeasurementField field : MeasurementField.values()) {
+                            System.out.println(field + ": " + client.getAveragedHistory().aggregate(field, 10));
+                        }
+                        break;
+
+                    case "EXPORT":
+                        Path file = Paths.get(client.getSensor().getUsername() + ".mser");
+                        int exported = client.exportAveragedHistory(file);
+                        System.out.println("Exported " + exported + " measurements to " + file.toAbsolutePath());
+                        break;
+
+                    case "STATS":
+                        System.out.println("Prefetch: " + client.getPrefetcher());
+                        System.out.println("Server: " + client.getServerThread());
+                        System.out.println("Hedging: requests=" + client.getHedgedRequests()
+                                + ", backupWins=" + client.getHedgeWins()
+                                + ", delayMillis=" + client.getHedgeDelayMillis());
+                        break;
+
                     case "EXIT":
                         client.shutdown();
                         break l;
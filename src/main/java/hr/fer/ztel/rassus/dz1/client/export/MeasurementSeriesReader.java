@@ -0,0 +1,298 @@
+package hr.fer.ztel.rassus.dz1.client.export;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory.Sample;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader of a measurement series written by {@link MeasurementSeriesWriter}.
+ * Blocks are read one by one; each block header, including its time range,
+ * may be inspected with {@link #nextBlock()} before deciding to decode the
+ * block with {@link #readBlock()} or to skip it.
+ */
+public class MeasurementSeriesReader implements Closeable {
+
+    /** Fields of a measurement, in order of their columns. */
+    private static final MeasurementField[] FIELDS = MeasurementField.values();
+
+    /** Stream from which the series is read. */
+    private final DataInputStream in;
+    /** Header of the current block, or <tt>null</tt> if there is none. */
+    private Block block;
+    /** True if the payload of the current block was already consumed. */
+    private boolean consumed = true;
+
+    public MeasurementSeriesReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+
+        int magic = this.in.readInt();
+        if (magic != MeasurementSeriesWriter.MAGIC) {
+            throw new IOException("Not a measurement series, magic: " + Integer.toHexString(magic));
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != MeasurementSeriesWriter.VERSION) {
+            throw new IOException("Unsupported measurement series version: " + version);
+        }
+    }
+
+    /**
+     * Reads the header of the next block, skipping the payload of the current
+     * block if it was not read. Returns <tt>null</tt> if there are no more blocks.
+     *
+     * @return the header of the next block, or <tt>null</tt> if there are none
+     * @throws IOException if an I/O error occurs or the series is malformed
+     */
+    public Block nextBlock() throws IOException {
+        if (!consumed) {
+            skipPayload();
+        }
+
+        long rows = Varints.readUnsignedOrEOF(in);
+        if (rows < 0) {
+            block = null;
+            return null;
+        }
+
+        long minTimestamp = Varints.readSigned(in);
+        long maxTimestamp = Varints.readSigned(in);
+        int[] counts = new int[FIELDS.length];
+        int[] mins = new int[FIELDS.length];
+        int[] maxs = new int[FIELDS.length];
+        for (MeasurementField field : FIELDS) {
+            int i = field.ordinal();
+            counts[i] = toLength(Varints.readUnsigned(in));
+            if (counts[i] > rows || !field.isOptional() && counts[i] != rows) {
+                throw new IOException("Malformed block header, " + counts[i] + " values of " + field + " in " + rows + " rows");
+            }
+            if (counts[i] == 0) continue;
+            mins[i] = toInt(Varints.readSigned(in));
+            maxs[i] = toInt(Varints.readSigned(in));
+        }
+        int payloadLength = toLength(Varints.readUnsigned(in));
+        // Every row takes at least one byte of the payload, for its timestamp
+        if (rows > payloadLength) {
+            throw new IOException("Malformed block header, " + rows + " rows in " + payloadLength + " bytes");
+        }
+
+        block = new Block(toLength(rows), minTimestamp, maxTimestamp, counts, mins, maxs, payloadLength);
+        consumed = false;
+        return block;
+    }
+
+    /**
+     * Decodes and returns the timestamped measurements of the current block.
+     *
+     * @return the timestamped measurements of the current block
+     * @throws IOException if an I/O error occurs or the series is malformed
+     * @throws IllegalStateException if there is no current block or it was already read
+     */
+    public List<Sample> readBlock() throws IOException {
+        if (block == null || consumed) {
+            throw new IllegalStateException("No block to read, call nextBlock() first");
+        }
+
+        byte[] bytes = new byte[block.payloadLength];
+        in.readFully(bytes);
+        consumed = true;
+        ByteBuffer payload = ByteBuffer.wrap(bytes);
+
+        try {
+            List<Sample> samples = decodePayload(payload);
+            if (payload.hasRemaining()) {
+                throw new IOException("Malformed block payload, " + payload.remaining() + " bytes left over");
+            }
+            return samples;
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Truncated block payload");
+        }
+    }
+
+    private List<Sample> decodePayload(ByteBuffer payload) throws IOException {
+
+        int rows = block.rows;
+        long[] timestamps = new long[rows];
+        int[][] columns = new int[FIELDS.length][];
+        boolean[][] present = new boolean[FIELDS.length][];
+
+        // Delta-of-delta encoded timestamps
+        long previousTimestamp = block.minTimestamp;
+        long previousDelta = 0;
+        for (int i = 0; i < rows; i++) {
+            long delta = Varints.readSigned(payload);
+            if (i >= 2) delta += previousDelta;
+            timestamps[i] = previousTimestamp + delta;
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+        }
+
+        // Null bitmaps of optional fields
+        for (MeasurementField field : FIELDS) {
+            boolean[] fieldPresent = new boolean[rows];
+            present[field.ordinal()] = fieldPresent;
+            if (!field.isOptional()) {
+                Arrays.fill(fieldPresent, true);
+                continue;
+            }
+            int count = 0;
+            for (int i = 0; i < rows; i += 8) {
+                int bits = payload.get();
+                for (int j = i; j < Math.min(i + 8, rows); j++) {
+                    fieldPresent[j] = (bits & 1 << (j - i)) != 0;
+                    if (fieldPresent[j]) count++;
+                }
+            }
+            // Values are read by the bitmap, so it must agree with the header
+            if (count != block.counts[field.ordinal()]) {
+                throw new IOException("Malformed block payload, " + count + " values of " + field
+                        + " in null bitmap, " + block.counts[field.ordinal()] + " in header");
+            }
+        }
+
+        // Delta encoded values of each column
+        for (MeasurementField field : FIELDS) {
+            int[] column = new int[rows];
+            columns[field.ordinal()] = column;
+            if (block.counts[field.ordinal()] == 0) continue;
+
+            long previous = block.mins[field.ordinal()];
+            for (int i = 0; i < rows; i++) {
+                if (!present[field.ordinal()][i]) continue;
+                previous += Varints.readSigned(payload);
+                column[i] = (int) previous;
+            }
+        }
+
+        List<Sample> samples = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Measurement.MeasurementBuilder builder = Measurement.builder();
+            for (MeasurementField field : FIELDS) {
+                field.set(builder, present[field.ordinal()][i] ? columns[field.ordinal()][i] : null);
+            }
+            samples.add(new Sample(timestamps[i], builder.build()));
+        }
+        return samples;
+    }
+
+    /**
+     * Reads and returns all remaining timestamped measurements of the series.
+     *
+     * @return all remaining timestamped measurements
+     * @throws IOException if an I/O error occurs or the series is malformed
+     */
+    public List<Sample> readAll() throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        while (nextBlock() != null) {
+            samples.addAll(readBlock());
+        }
+        return samples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static int toInt(long value) throws IOException {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Malformed measurement series, value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static int toLength(long value) throws IOException {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Malformed measurement series, length out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private void skipPayload() throws IOException {
+        int remaining = block.payloadLength;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Truncated block payload");
+            }
+            remaining -= skipped;
+        }
+        consumed = true;
+    }
+
+    /**
+     * Header of a block, with statistics that allow skipping the block
+     * without decoding it.
+     */
+    @ToString
+    public static class Block {
+        /** Number of measurements in the block. */
+        @Getter private final int rows;
+        /** Earliest timestamp in the block, in milliseconds. */
+        @Getter private final long minTimestamp;
+        /** Latest timestamp in the block, in milliseconds. */
+        @Getter private final long maxTimestamp;
+        /** Number of present values of each field. */
+        private final int[] counts;
+        /** Minimum value of each field. */
+        private final int[] mins;
+        /** Maximum value of each field. */
+        private final int[] maxs;
+        /** Length of the payload, in bytes. */
+        @Getter private final int payloadLength;
+
+        private Block(int rows, long minTimestamp, long maxTimestamp,
+                      int[] counts, int[] mins, int[] maxs, int payloadLength) {
+            this.rows = rows;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.counts = counts;
+            this.mins = mins;
+            this.maxs = maxs;
+            this.payloadLength = payloadLength;
+        }
+
+        /**
+         * Returns the number of measurements in which the field is present.
+         *
+         * @param field field of a measurement
+         * @return the number of present values of the field
+         */
+        public int getCount(MeasurementField field) {
+            return counts[field.ordinal()];
+        }
+
+        /**
+         * Returns the minimum value of the field, or <tt>null</tt> if it is
+         * not present in any measurement of the block.
+         *
+         * @param field field of a measurement
+         * @return the minimum value of the field, or <tt>null</tt> if absent
+         */
+        public Integer getMin(MeasurementField field) {
+            return counts[field.ordinal()] > 0 ? mins[field.ordinal()] : null;
+        }
+
+        /**
+         * Returns the maximum value of the field, or <tt>null</tt> if it is
+         * not present in any measurement of the block.
+         *
+         * @param field field of a measurement
+         * @return the maximum value of the field, or <tt>null</tt> if absent
+         */
+        public Integer getMax(MeasurementField field) {
+            return counts[field.ordinal()] > 0 ? maxs[field.ordinal()] : null;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package hr.fer.ztel.rassus.dz1.client.export;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming writer of a series of timestamped measurements in a compact
+ * binary column format.
+ * <p>
+ * The series starts with the {@link #MAGIC} number and {@link #VERSION} byte,
+ * followed by blocks of up to <tt>blockSize</tt> measurements. Each block
+ * consists of a header and a payload:
+ * <ul>
+ * <li>header: number of rows, minimum and maximum timestamp, then for each
+ * field the number of present values and, if any, their minimum and maximum,
+ * then the payload length in bytes</li>
+ * <li>payload: the timestamps encoded as delta-of-delta (the first one as a
+ * delta from the minimum, the second one as a delta from the first), then a
+ * null bitmap for each optional field, then for each field the present values
+ * encoded as deltas from the previous value (starting from the minimum)</li>
+ * </ul>
+ * All numbers are variable-length integers, zigzag-encoded if signed. Min/max
+ * headers and the payload length allow readers to skip blocks without decoding.
+ * Timestamps need not be evenly spaced; evenly spaced ones take one byte each.
+ */
+public class MeasurementSeriesWriter implements Closeable {
+
+    /** Magic number at the start of a series: <tt>MSER</tt> in ASCII. */
+    static final int MAGIC = 0x4D534552;
+    /** Version of the format. */
+    static final int VERSION = 2;
+    /** Default maximum number of measurements in a block. */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /** Fields of a measurement, in order of their columns. */
+    private static final MeasurementField[] FIELDS = MeasurementField.values();
+
+    /** Stream to which the series is written. */
+    private final OutputStream out;
+    /** Maximum number of measurements in a block. */
+    private final int blockSize;
+    /** Timestamps of the current block. */
+    private final long[] timestamps;
+    /** Values of each field in the current block. */
+    private final int[][] columns;
+    /** Presence of each field in the current block. */
+    private final boolean[][] present;
+    /** Number of measurements in the current block. */
+    private int rows;
+    /** Reusable buffer of the block header. */
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+    /** Reusable buffer of the block payload. */
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+    public MeasurementSeriesWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    public MeasurementSeriesWriter(OutputStream out, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+
+        this.out = out;
+        this.blockSize = blockSize;
+        this.timestamps = new long[blockSize];
+        this.columns = new int[FIELDS.length][blockSize];
+        this.present = new boolean[FIELDS.length][blockSize];
+
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    /**
+     * Appends the measurement to the series, writing out the current block
+     * once it is full.
+     *
+     * @param timestamp   time of the measurement, in milliseconds
+     * @param measurement measurement to be written
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(long timestamp, Measurement measurement) throws IOException {
+        timestamps[rows] = timestamp;
+        for (MeasurementField field : FIELDS) {
+            Integer value = field.get(measurement);
+            columns[field.ordinal()][rows] = value != null ? value : 0;
+            present[field.ordinal()][rows] = value != null;
+        }
+
+        if (++rows == blockSize) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes out the current block, even if it is not full, and flushes the stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (rows == 0) return;
+        header.reset();
+        payload.reset();
+
+        // Delta-of-delta encoded timestamps
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        for (int i = 0; i < rows; i++) {
+            minTimestamp = Math.min(minTimestamp, timestamps[i]);
+            maxTimestamp = Math.max(maxTimestamp, timestamps[i]);
+        }
+        long previousTimestamp = minTimestamp;
+        long previousDelta = 0;
+        for (int i = 0; i < rows; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            Varints.writeSigned(payload, i < 2 ? delta : delta - previousDelta);
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+        }
+
+        // Null bitmaps of optional fields
+        for (MeasurementField field : FIELDS) {
+            if (!field.isOptional()) continue;
+            boolean[] fieldPresent = present[field.ordinal()];
+            for (int i = 0; i < rows; i += 8) {
+                int bits = 0;
+                for (int j = i; j < Math.min(i + 8, rows); j++) {
+                    if (fieldPresent[j]) bits |= 1 << (j - i);
+                }
+                payload.write(bits);
+            }
+        }
+
+        Varints.writeUnsigned(header, rows);
+        Varints.writeSigned(header, minTimestamp);
+        Varints.writeSigned(header, maxTimestamp);
+        for (MeasurementField field : FIELDS) {
+            int[] column = columns[field.ordinal()];
+            boolean[] fieldPresent = present[field.ordinal()];
+
+            // Find statistics of the column
+            int count = 0;
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < rows; i++) {
+                if (!fieldPresent[i]) continue;
+                count++;
+                min = Math.min(min, column[i]);
+                max = Math.max(max, column[i]);
+            }
+
+            Varints.writeUnsigned(header, count);
+            if (count == 0) continue;
+            Varints.writeSigned(header, min);
+            Varints.writeSigned(header, max);
+
+            // Delta encoded values of the column
+            long previous = min;
+            for (int i = 0; i < rows; i++) {
+                if (!fieldPresent[i]) continue;
+                Varints.writeSigned(payload, column[i] - previous);
+                previous = column[i];
+            }
+        }
+        Varints.writeUnsigned(header, payload.size());
+
+        header.writeTo(out);
+        payload.writeTo(out);
+        rows = 0;
+    }
+}
@@ -0,0 +1,83 @@
+package hr.fer.ztel.rassus.dz1.client.export;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding and decoding of zigzag variable-length integers,
+ * seven bits per byte with the highest bit marking continuation.
+ * Decoding a truncated or overlong varint throws an {@link IOException}.
+ */
+final class Varints {
+
+    /** Maximum number of bytes of a 64-bit varint. */
+    private static final int MAX_BYTES = 10;
+
+    /** Disable instantiation. */
+    private Varints() {}
+
+    static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    static void writeUnsigned(OutputStream out, long n) throws IOException {
+        while ((n & ~0x7FL) != 0) {
+            out.write((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.write((int) n);
+    }
+
+    static void writeSigned(OutputStream out, long n) throws IOException {
+        writeUnsigned(out, zigzag(n));
+    }
+
+    /**
+     * Reads an unsigned varint from the stream, or returns <tt>-1</tt> if
+     * the stream ends before the first byte.
+     */
+    static long readUnsignedOrEOF(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) return -1;
+
+        long n = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift >= 7 * MAX_BYTES) throw new IOException("Malformed varint");
+            b = in.read();
+            if (b < 0) throw new EOFException("Truncated varint");
+            n |= (long) (b & 0x7F) << shift;
+        }
+        return n;
+    }
+
+    static long readUnsigned(InputStream in) throws IOException {
+        long n = readUnsignedOrEOF(in);
+        if (n < 0) throw new EOFException("Truncated varint");
+        return n;
+    }
+
+    static long readSigned(InputStream in) throws IOException {
+        return unzigzag(readUnsigned(in));
+    }
+
+    static long readSigned(ByteBuffer buffer) throws IOException {
+        long n = 0;
+        int b;
+        int shift = 0;
+        do {
+            if (shift >= 7 * MAX_BYTES) throw new IOException("Malformed varint");
+            if (!buffer.hasRemaining()) throw new EOFException("Truncated varint");
+            b = buffer.get();
+            n |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return unzigzag(n);
+    }
+}
@@ -1,14 +1,105 @@
 package hr.fer.ztel.rassus.dz1.client.loader;
 
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Registry of loaders shared by all threads of a sensor client.
+ */
+@Log4j2
 public class Loaders {
 
-    private static MeasurementLoader measurementLoader;
+    /** System property with the path of a measurements file that is watched for changes. */
+    public static final String MEASUREMENTS_FILE_PROPERTY = "measurements.file";
+    /**
+     * System property that enables procedurally generated measurements. Its
+     * value is added to the port of every client to get its sensor ID.
+     */
+    public static final String MEASUREMENTS_SYNTHETIC_PROPERTY = "measurements.synthetic";
+    /** System property with the seed of procedurally generated measurements. */
+    public static final String MEASUREMENTS_SEED_PROPERTY = "measurements.seed";
+
+    private static volatile MeasurementLoader measurementLoader;
 
+    /** Disable instantiation. */
+    private Loaders() {}
+
+    /**
+     * Returns the registered measurement loader, creating the default one on
+     * first call. The default loader generates measurements of every client
+     * if the {@value #MEASUREMENTS_SYNTHETIC_PROPERTY} system property is set,
+     * or reads the file specified by the {@value #MEASUREMENTS_FILE_PROPERTY}
+     * system property and watches it for changes. If neither property is set,
+     * it reads the bundled classpath resource.
+     *
+     * @return the registered measurement loader
+     */
     public static MeasurementLoader getMeasurementLoader() {
-        if (measurementLoader == null) {
-            measurementLoader = new MeasurementCSVLoader();
+        MeasurementLoader loader = measurementLoader;
+        if (loader == null) {
+            synchronized (Loaders.class) {
+                loader = measurementLoader;
+                if (loader == null) {
+                    measurementLoader = loader = createDefaultMeasurementLoader();
+                }
+            }
+        }
+
+        return loader;
+    }
+
+    /**
+     * Registers the specified measurement loader, replacing the current one.
+     * If the replaced loader watches a measurements file, it stops watching.
+     *
+     * @param loader measurement loader to be registered
+     */
+    public static void setMeasurementLoader(MeasurementLoader loader) {
+        Objects.requireNonNull(loader);
+        MeasurementLoader previous;
+        synchronized (Loaders.class) {
+            previous = measurementLoader;
+            measurementLoader = loader;
+        }
+
+        if (previous instanceof MeasurementCSVLoader && previous != loader) {
+            ((MeasurementCSVLoader) previous).stopWatching();
         }
+    }
 
-        return measurementLoader;
+    /**
+     * Returns the sensor ID of the client with the specified port, which
+     * selects its series of procedurally generated measurements. The port is
+     * offset by the {@value #MEASUREMENTS_SYNTHETIC_PROPERTY} system property,
+     * so clients in different JVMs with the same port can be told apart.
+     *
+     * @param port port of the client
+     * @return the sensor ID of the client
+     */
+    public static long getSensorId(int port) {
+        return Long.getLong(MEASUREMENTS_SYNTHETIC_PROPERTY, 0) + port;
+    }
+
+    private static MeasurementLoader createDefaultMeasurementLoader() {
+        String baseSensorId = System.getProperty(MEASUREMENTS_SYNTHETIC_PROPERTY);
+        if (baseSensorId != null) {
+            long seed = Long.getLong(MEASUREMENTS_SEED_PROPERTY, SyntheticMeasurementLoader.DEFAULT_SEED);
+            return new SyntheticMeasurementLoader(seed, Long.parseLong(baseSensorId));
+        }
+
+        String filePath = System.getProperty(MEASUREMENTS_FILE_PROPERTY);
+        if (filePath == null) {
+            return new MeasurementCSVLoader();
+        }
+
+        MeasurementCSVLoader loader = new MeasurementCSVLoader(filePath);
+        try {
+            loader.watch();
+        } catch (IOException e) {
+            log.warn("Unable to watch measurements file {}", filePath, e);
+        }
+        return loader;
     }
 }
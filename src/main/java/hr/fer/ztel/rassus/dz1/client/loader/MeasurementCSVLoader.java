@@ -1,58 +1,237 @@
 package hr.fer.ztel.rassus.dz1.client.loader;
 
 import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import lombok.extern.log4j.Log4j2;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
- * Class for loading measurements from a CSV file on disk.
+ * Class for loading measurements from a CSV file on disk or on the classpath.
+ * Measurements are kept as an immutable snapshot that is loaded exactly once
+ * and, if the file on disk is watched, atomically replaced on every change.
+ * A source without any measurements is rejected, both on the first load and
+ * on every reload.
  */
+@Log4j2
 public class MeasurementCSVLoader implements MeasurementLoader {
 
-    /** Name of the file from which all lines are read. */
-    private static final String DEFAULT_MEASUREMENTS_FILE = "src/main/resources/measurements.csv";
+    /** Name of the classpath resource from which all lines are read by default. */
+    private static final String DEFAULT_MEASUREMENTS_RESOURCE = "/measurements.csv";
+    /** Time without changes of the watched directory after which the file is reloaded, in milliseconds. */
+    private static final long RELOAD_QUIET_MILLIS = 500;
 
-    /** List of measurements cached after the first load. */
-    private List<Measurement> cachedMeasurements;
+    /** Immutable snapshot of measurements, <tt>null</tt> until the first load. */
+    private volatile List<Measurement> cachedMeasurements;
 
-    private Path measurementsFile;
+    /** File from which measurements are read, or <tt>null</tt> if read from classpath. */
+    private final Path measurementsFile;
+    /** Classpath resource from which measurements are read, or <tt>null</tt> if read from file. */
+    private final String measurementsResource;
+
+    /** Thread that watches the measurements file for changes. */
+    private Thread watcherThread;
 
     public MeasurementCSVLoader() {
-        this(DEFAULT_MEASUREMENTS_FILE);
+        this(null, DEFAULT_MEASUREMENTS_RESOURCE);
     }
 
     public MeasurementCSVLoader(String filePath) {
-        this.measurementsFile = Paths.get(filePath);
+        this(Paths.get(filePath).toAbsolutePath(), null);
+    }
+
+    private MeasurementCSVLoader(Path measurementsFile, String measurementsResource) {
+        this.measurementsFile = measurementsFile;
+        this.measurementsResource = measurementsResource;
+    }
+
+    /**
+     * Returns a loader that reads measurements from the specified classpath resource.
+     *
+     * @param resourceName absolute name of the classpath resource
+     * @return a loader that reads from the classpath resource
+     */
+    public static MeasurementCSVLoader fromClasspath(String resourceName) {
+        return new MeasurementCSVLoader(null, resourceName);
     }
 
+    /**
+     * Returns the measurement at the specified index, wrapped around
+     * the number of measurements in the current snapshot.
+     *
+     * @param index index of the measurement
+     * @return the measurement at the specified index
+     */
     @Override
     public Measurement getMeasurement(int index) {
-        return getMeasurements().get(index);
+        List<Measurement> measurements = getMeasurements();
+        return measurements.get(index % measurements.size());
     }
 
     @Override
     public List<Measurement> getMeasurements() {
-        if (cachedMeasurements == null) {
-            cachedMeasurements = loadMeasurements();
+        List<Measurement> measurements = cachedMeasurements;
+        if (measurements == null) {
+            synchronized (this) {
+                measurements = cachedMeasurements;
+                if (measurements == null) {
+                    cachedMeasurements = measurements = loadMeasurements();
+                }
+            }
         }
 
-        return cachedMeasurements;
+        return measurements;
     }
 
-    private List<Measurement> loadMeasurements() {
+    @Override
+    public int size() {
+        return getMeasurements().size();
+    }
+
+    /**
+     * Starts watching the measurements file in a daemon thread and reloads
+     * the measurements every time the file changes. Changes are coalesced
+     * until the directory of the file is quiet for {@value #RELOAD_QUIET_MILLIS}
+     * ms, so a file that is being written is not loaded after its first
+     * lines. Writers that may pause for longer should write a temporary file
+     * in the same directory and atomically rename it to the measurements
+     * file. Readers keep getting the previous snapshot until the new one is
+     * fully loaded. If the changed file can not be parsed, the previous
+     * snapshot is kept.
+     *
+     * @throws IOException if the watch service can not be registered
+     * @throws IllegalStateException if measurements are read from classpath
+     */
+    public synchronized void watch() throws IOException {
+        if (measurementsFile == null) {
+            throw new IllegalStateException("Can not watch classpath resource: " + measurementsResource);
+        }
+        if (watcherThread != null) {
+            return;
+        }
+
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        measurementsFile.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        watcherThread = new Thread(() -> watchLoop(watchService), "MeasurementWatcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log.info("Watching measurements file {}", measurementsFile);
+    }
+
+    /**
+     * Stops watching the measurements file, if it is watched.
+     */
+    public synchronized void stopWatching() {
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+    }
+
+    private void watchLoop(WatchService watchService) {
+        try (WatchService ws = watchService) {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!isMeasurementsFileChanged(ws.take())) {
+                    continue;
+                }
+
+                // Wait until the write is finished, so a truncated file is not loaded
+                for (WatchKey key; (key = ws.poll(RELOAD_QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null; ) {
+                    isMeasurementsFileChanged(key);
+                }
+                reloadMeasurements();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ClosedWatchServiceException e) {
+            log.warn("Stopped watching measurements file {}", measurementsFile, e);
+        }
+    }
+
+    /**
+     * Consumes the events of the key and resets it.
+     *
+     * @param key signalled key of the watched directory
+     * @return true if any event is about the measurements file
+     */
+    private boolean isMeasurementsFileChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (context instanceof Path && measurementsFile.getFileName().equals(context)) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reloadMeasurements() {
         try {
-            return Files.lines(measurementsFile, StandardCharsets.UTF_8)
+            List<Measurement> measurements = loadMeasurements();
+            cachedMeasurements = measurements;
+            log.info("Reloaded {} measurements from {}", measurements.size(), measurementsFile);
+        } catch (RuntimeException e) {
+            log.warn("Keeping previous measurements, unable to reload {}", measurementsFile, e);
+        }
+    }
+
+    /**
+     * Loads all measurements from the source.
+     *
+     * @return an unmodifiable list of measurements, never empty
+     * @throws RuntimeException if the source can not be read or has no measurements
+     */
+    private List<Measurement> loadMeasurements() {
+        List<Measurement> measurements;
+        try (BufferedReader reader = openReader()) {
+            measurements = Collections.unmodifiableList(reader.lines()
                     .skip(1) // skip header
                     .filter(s -> !s.isEmpty()) // filter out empty lines
                     .map(Measurement::parseFromCSV) // convert string to Measurement
-                    .collect(Collectors.toList());
+                    .collect(Collectors.toList()));
         } catch (Exception e) {
             throw new RuntimeException("Unable to load measurements from file.", e);
         }
+
+        // Measurements are indexed modulo their count, so there must be at least one
+        if (measurements.isEmpty()) {
+            throw new IllegalStateException("No measurements in " + getSource());
+        }
+        return measurements;
+    }
+
+    private Object getSource() {
+        return measurementsFile != null ? measurementsFile : "classpath resource " + measurementsResource;
+    }
+
+    private BufferedReader openReader() throws IOException {
+        if (measurementsFile != null) {
+            return Files.newBufferedReader(measurementsFile, StandardCharsets.UTF_8);
+        }
+
+        InputStream is = MeasurementCSVLoader.class.getResourceAsStream(measurementsResource);
+        if (is == null) {
+            throw new IOException("Classpath resource not found: " + measurementsResource);
+        }
+        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
     }
 }
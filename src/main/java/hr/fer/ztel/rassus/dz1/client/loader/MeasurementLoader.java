@@ -8,6 +8,35 @@ public interface MeasurementLoader {
 
     Measurement getMeasurement(int index);
 
+    /**
+     * Returns the measurement at the specified index in the series of the
+     * specified sensor. Loaders that do not have a series per sensor return
+     * the same measurement as {@link #getMeasurement(int)}.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement
+     * @return the measurement at the specified index
+     */
+    default Measurement getMeasurement(long sensorId, long index) {
+        return getMeasurement(Math.toIntExact(index));
+    }
+
+    /**
+     * Returns all measurements of the series. Loaders of unbounded series
+     * do not support this operation, use {@link #size()} and
+     * {@link #getMeasurement(int)} instead.
+     *
+     * @return all measurements of the series
+     * @throws UnsupportedOperationException if the series is unbounded
+     */
     List<Measurement> getMeasurements();
 
+    /**
+     * Returns the number of measurements after which the series starts over,
+     * or {@link Integer#MAX_VALUE} if the series is unbounded.
+     *
+     * @return the number of measurements in the series
+     */
+    int size();
+
 }
@@ -0,0 +1,268 @@
+package hr.fer.ztel.rassus.dz1.client.loader;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Class for generating realistic measurements procedurally, without any
+ * stored data. Every value is computed on demand from the seed, sensor ID
+ * and index of the measurement, which is interpreted as seconds since the
+ * sensor started. Equal arguments always produce equal measurements.
+ * <p>
+ * Generated series follow a daily temperature cycle with an inversely
+ * correlated humidity, regional pressure fronts that last several days and
+ * traffic peaks of gases in the morning and evening, on top of noise and
+ * rare spikes. As in the bundled dataset, CO is always present while each
+ * measurement has exactly one of NO2 and SO2.
+ * <p>
+ * Primitive accessors such as {@link #temperature(long, long)} do not
+ * allocate and absent gases are returned as {@link #NO_VALUE}. Series are
+ * unbounded, so {@link #getMeasurements()} is not supported. Instances are
+ * immutable and may be shared between threads.
+ */
+@ToString
+public class SyntheticMeasurementLoader implements MeasurementLoader {
+
+    /** Value returned by primitive accessors of a gas that is absent. */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+    /** Default seed of generated series. */
+    public static final long DEFAULT_SEED = 0x5EED_CAFEL;
+
+    /** Number of seconds in a day, the period of diurnal trends. */
+    private static final double SECONDS_PER_DAY = 86_400;
+    /** Periods of pressure fronts, in seconds. */
+    private static final double[] PRESSURE_FRONT_PERIODS = {3.7 * SECONDS_PER_DAY, 9.3 * SECONDS_PER_DAY};
+    /** Probability that a gas measurement is a spike. */
+    private static final double SPIKE_PROBABILITY = 0.005;
+
+    // Independent random channels of a sensor
+    private static final long TEMPERATURE = 1, PRESSURE = 2, HUMIDITY = 3, CO = 4, NO2 = 5, SO2 = 6;
+    private static final long PRESENCE = 7, SPIKE = 8, PARAMETER = 1 << 16;
+
+    /** Seed of generated series. */
+    @Getter private final long seed;
+    /** ID of the sensor whose series is returned by {@link #getMeasurement(int)}. */
+    @Getter private final long sensorId;
+
+    public SyntheticMeasurementLoader(long sensorId) {
+        this(DEFAULT_SEED, sensorId);
+    }
+
+    public SyntheticMeasurementLoader(long seed, long sensorId) {
+        this.seed = seed;
+        this.sensorId = sensorId;
+    }
+
+    @Override
+    public Measurement getMeasurement(int index) {
+        return getMeasurement(sensorId, index);
+    }
+
+    /**
+     * Not supported, since generated series are unbounded.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public List<Measurement> getMeasurements() {
+        throw new UnsupportedOperationException("Synthetic series are unbounded");
+    }
+
+    /**
+     * Returns {@link Integer#MAX_VALUE}, since generated series are unbounded.
+     *
+     * @return {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public int size() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the measurement of the specified sensor at the specified index.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the generated measurement
+     */
+    @Override
+    public Measurement getMeasurement(long sensorId, long index) {
+        int no2 = no2(sensorId, index);
+        int so2 = so2(sensorId, index);
+        return Measurement.builder()
+                .temperature(temperature(sensorId, index))
+                .pressure(pressure(sensorId, index))
+                .humidity(humidity(sensorId, index))
+                .co(co(sensorId, index))
+                .no2(no2 != NO_VALUE ? no2 : null)
+                .so2(so2 != NO_VALUE ? so2 : null)
+                .build();
+    }
+
+    /**
+     * Returns the temperature of the sensor, peaking in the afternoon.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the temperature
+     */
+    public int temperature(long sensorId, long index) {
+        return (int) Math.round(temperatureValue(sensorId, index));
+    }
+
+    /**
+     * Returns the air pressure of the sensor, following regional pressure fronts.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the air pressure
+     */
+    public int pressure(long sensorId, long index) {
+        double base = 995 + 30 * parameter(sensorId, PRESSURE);
+        double fronts = 0;
+        for (int i = 0; i < PRESSURE_FRONT_PERIODS.length; i++) {
+            // Fronts are shared by all sensors, so phase depends only on the seed
+            double phase = 2 * Math.PI * unit(mix(seed, -1, i, PARAMETER));
+            fronts += 9 * Math.sin(2 * Math.PI * index / PRESSURE_FRONT_PERIODS[i] + phase);
+        }
+        return (int) Math.round(base + fronts + 1.5 * noise(sensorId, index, PRESSURE));
+    }
+
+    /**
+     * Returns the relative humidity of the sensor, inversely correlated with temperature.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the relative humidity
+     */
+    public int humidity(long sensorId, long index) {
+        double base = 40 + 25 * parameter(sensorId, HUMIDITY);
+        double deviation = temperatureValue(sensorId, index) - temperatureBase(sensorId);
+        double humidity = base - 2.5 * deviation + 3 * noise(sensorId, index, HUMIDITY);
+        return (int) Math.round(Math.max(5, Math.min(100, humidity)));
+    }
+
+    /**
+     * Returns the CO concentration of the sensor, peaking with traffic.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the CO concentration
+     */
+    public int co(long sensorId, long index) {
+        double base = 150 + 300 * parameter(sensorId, CO);
+        return gas(sensorId, index, CO, base, 0.25);
+    }
+
+    /**
+     * Returns the NO2 concentration of the sensor, peaking with traffic,
+     * or {@link #NO_VALUE} if absent.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the NO2 concentration, or {@link #NO_VALUE} if absent
+     */
+    public int no2(long sensorId, long index) {
+        if (!hasNo2(sensorId, index)) return NO_VALUE;
+        double base = 150 + 350 * parameter(sensorId, NO2);
+        return gas(sensorId, index, NO2, base, 0.2);
+    }
+
+    /**
+     * Returns the SO2 concentration of the sensor, or {@link #NO_VALUE} if absent.
+     *
+     * @param sensorId ID of the sensor
+     * @param index    index of the measurement, in seconds
+     * @return the SO2 concentration, or {@link #NO_VALUE} if absent
+     */
+    public int so2(long sensorId, long index) {
+        if (hasNo2(sensorId, index)) return NO_VALUE;
+        double base = 2 + 15 * parameter(sensorId, SO2);
+        return gas(sensorId, index, SO2, base, 0.5);
+    }
+
+    /**
+     * Returns true if the measurement has NO2, false if it has SO2.
+     * Share of measurements with NO2 differs between sensors.
+     */
+    private boolean hasNo2(long sensorId, long index) {
+        double no2Share = 0.3 + 0.4 * parameter(sensorId, PRESENCE);
+        return unit(mix(seed, sensorId, index, PRESENCE)) < no2Share;
+    }
+
+    private double temperatureBase(long sensorId) {
+        return 22 + 8 * parameter(sensorId, TEMPERATURE);
+    }
+
+    private double temperatureValue(long sensorId, long index) {
+        double amplitude = 4 + 4 * parameter(sensorId, TEMPERATURE + PARAMETER);
+        // Coldest at 3 AM and warmest at 3 PM, give or take an hour
+        double peakSeconds = (15 + 2 * parameter(sensorId, TEMPERATURE + 2 * PARAMETER) - 1) * 3600;
+        double diurnal = Math.cos(2 * Math.PI * (index - peakSeconds) / SECONDS_PER_DAY);
+        return temperatureBase(sensorId) + amplitude * diurnal + 0.7 * noise(sensorId, index, TEMPERATURE);
+    }
+
+    /**
+     * Returns a gas concentration with morning and evening traffic peaks,
+     * relative noise and rare spikes.
+     */
+    private int gas(long sensorId, long index, long channel, double base, double relativeNoise) {
+        double hour = (index % (long) SECONDS_PER_DAY) / 3600.0;
+        double traffic = 1 + 0.8 * bump(hour, 8, 1.5) + 0.6 * bump(hour, 18, 2);
+        double value = base * traffic * (1 + relativeNoise * noise(sensorId, index, channel));
+        if (unit(mix(seed, sensorId, index, channel + SPIKE * PARAMETER)) < SPIKE_PROBABILITY) {
+            value *= 10 + 40 * unit(mix(seed, sensorId, index, channel + 2 * SPIKE * PARAMETER));
+        }
+        return (int) Math.round(Math.max(0, value));
+    }
+
+    private static double bump(double hour, double peakHour, double width) {
+        double distance = (hour - peakHour) / width;
+        return Math.exp(-distance * distance);
+    }
+
+    /**
+     * Returns a constant parameter of the sensor, uniform in [0, 1).
+     */
+    private double parameter(long sensorId, long channel) {
+        return unit(mix(seed, sensorId, -1, channel + PARAMETER));
+    }
+
+    /**
+     * Returns approximately normal noise with zero mean and unit variance,
+     * as a scaled sum of four uniform values.
+     */
+    private double noise(long sensorId, long index, long channel) {
+        long h = mix(seed, sensorId, index, channel);
+        double sum = 0;
+        for (int i = 0; i < 4; i++) {
+            h = splitMix(h);
+            sum += unit(h);
+        }
+        return (sum - 2) * Math.sqrt(3);
+    }
+
+    private static long mix(long seed, long sensorId, long index, long channel) {
+        return splitMix(splitMix(splitMix(splitMix(seed) ^ sensorId) ^ index) ^ channel);
+    }
+
+    /**
+     * Finalizer of the SplitMix64 generator.
+     */
+    private static long splitMix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a value uniform in [0, 1) from the highest 53 bits of the hash.
+     */
+    private static double unit(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,60 @@
+package hr.fer.ztel.rassus.dz1.client.model;
+
+import lombok.Getter;
+
+/**
+ * Field of a {@link Measurement}.
+ */
+public enum MeasurementField {
+    TEMPERATURE(false),
+    PRESSURE(false),
+    HUMIDITY(false),
+    CO(true),
+    NO2(true),
+    SO2(true);
+
+    /** True if the field may be absent from a measurement. */
+    @Getter private final boolean optional;
+
+    MeasurementField(boolean optional) {
+        this.optional = optional;
+    }
+
+    /**
+     * Returns the value of this field in the specified measurement,
+     * or <tt>null</tt> if an optional field is absent.
+     *
+     * @param measurement measurement whose field value is returned
+     * @return the value of this field, or <tt>null</tt> if absent
+     */
+    public Integer get(Measurement measurement) {
+        switch (this) {
+            case TEMPERATURE: return measurement.getTemperature();
+            case PRESSURE:    return measurement.getPressure();
+            case HUMIDITY:    return measurement.getHumidity();
+            case CO:          return measurement.getCo();
+            case NO2:         return measurement.getNo2();
+            case SO2:         return measurement.getSo2();
+            default: throw new AssertionError(this);
+        }
+    }
+
+    /**
+     * Sets the value of this field in the specified measurement builder.
+     *
+     * @param builder measurement builder whose field value is set
+     * @param value   value of this field, or <tt>null</tt> if absent
+     * @return the measurement builder
+     */
+    public Measurement.MeasurementBuilder set(Measurement.MeasurementBuilder builder, Integer value) {
+        switch (this) {
+            case TEMPERATURE: return builder.temperature(value);
+            case PRESSURE:    return builder.pressure(value);
+            case HUMIDITY:    return builder.humidity(value);
+            case CO:          return builder.co(value);
+            case NO2:         return builder.no2(value);
+            case SO2:         return builder.so2(value);
+            default: throw new AssertionError(this);
+        }
+    }
+}
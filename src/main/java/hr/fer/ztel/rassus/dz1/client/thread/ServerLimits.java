@@ -0,0 +1,35 @@
+package hr.fer.ztel.rassus.dz1.client.thread;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Admission control limits of a {@link ServerThread}.
+ */
+@Builder(toBuilder = true)
+@Getter
+@ToString
+public class ServerLimits {
+
+    /** Limits used by sensor clients. */
+    public static final ServerLimits DEFAULT = ServerLimits.builder().build();
+
+    /** Maximum number of connections served concurrently. */
+    @Builder.Default private final int maxConnections = 16;
+    /** Maximum number of accepted connections waiting to be served. */
+    @Builder.Default private final int maxQueuedConnections = 16;
+    /** Maximum number of subscribed clients, served apart from the connections. */
+    @Builder.Default private final int maxSubscriptions = 16;
+    /** Maximum time an accepted connection may wait to be served, in milliseconds. */
+    @Builder.Default private final int maxQueueWaitMillis = 1000;
+    /** Maximum time a connection may stay idle between two requests, in milliseconds. */
+    @Builder.Default private final int idleTimeoutMillis = 30_000;
+    /** Maximum time a push to a subscribed client may block, in milliseconds. */
+    @Builder.Default private final int pushWriteTimeoutMillis = 5000;
+    /** Number of requests a single connection may make per second, on average. */
+    @Builder.Default private final double requestsPerSecond = 20;
+    /** Number of requests a single connection may make in a burst. */
+    @Builder.Default private final double requestBurst = 40;
+
+}
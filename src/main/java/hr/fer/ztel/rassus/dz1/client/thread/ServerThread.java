@@ -3,6 +3,7 @@ package hr.fer.ztel.rassus.dz1.client.thread;
 import com.google.gson.Gson;
 import hr.fer.ztel.rassus.dz1.client.loader.Loaders;
 import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
@@ -17,10 +18,20 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.BUSY_KEYWORD;
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.GET_HISTORY_KEYWORD;
 import static hr.fer.ztel.rassus.dz1.client.util.Utility.GET_MEASUREMENT_KEYWORD;
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.SUBSCRIBE_MEASUREMENT_KEYWORD;
 
 /**
  * Server of a single sensor client that serves
@@ -30,35 +41,109 @@ import static hr.fer.ztel.rassus.dz1.client.util.Utility.GET_MEASUREMENT_KEYWORD
  */
 @Log4j2
 @ToString
-@RequiredArgsConstructor
 public class ServerThread extends Thread {
 
+    /** Interval between two measurements pushed to a subscribed client, in milliseconds. */
+    public static final int PUSH_INTERVAL_MILLIS = 1000;
+
+    /** Maximum number of pending connections not yet accepted. */
+    private static final int ACCEPT_BACKLOG = 32;
+    /** Interval between two housekeeping runs, in milliseconds. */
+    private static final int HOUSEKEEPING_INTERVAL_MILLIS = 1000;
+
+    /** Admission control limits. */
+    @Getter @ToString.Exclude private final ServerLimits limits;
+    @ToString.Exclude
+    private final transient ThreadPoolExecutor threadPool;
+    /** Pool of subscription workers, which does not take connection slots. */
+    @ToString.Exclude
+    private final transient ThreadPoolExecutor subscriptionPool;
+    /** Currently served subscriptions. */
     @ToString.Exclude
-    private final transient ExecutorService threadPool = Executors.newFixedThreadPool(
-            Runtime.getRuntime().availableProcessors() - 1
-    );
+    private final transient Set<SubscriptionWorker> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /** Number of connections rejected because the server was full. */
+    @ToString.Exclude private final AtomicLong rejectedConnections = new AtomicLong();
+    /** Number of requests rejected because a peer exceeded its rate limit. */
+    @ToString.Exclude private final AtomicLong rateLimitedRequests = new AtomicLong();
+    /** Number of connections closed because they were idle for too long. */
+    @ToString.Exclude private final AtomicLong idleConnections = new AtomicLong();
 
     @Getter private final long startTime = System.currentTimeMillis();
     @Getter private final String ipAddress;
     @Getter private final int port;
+    /** ID of this sensor, which selects its series of measurements. */
+    @Getter private final long sensorId;
+    /** History of measurements generated by this sensor. */
+    @ToString.Exclude private final transient MeasurementHistory localHistory;
+    /** History of measurements averaged with the closest sensor. */
+    @ToString.Exclude private final transient MeasurementHistory averagedHistory;
+
+    /**
+     * Constructs a server with the default limits.
+     *
+     * @param ipAddress       address the server listens on
+     * @param port            port the server listens on
+     * @param localHistory    history of measurements generated by this sensor
+     * @param averagedHistory history of measurements averaged with the closest sensor
+     */
+    public ServerThread(String ipAddress, int port,
+                        MeasurementHistory localHistory, MeasurementHistory averagedHistory) {
+        this(ipAddress, port, localHistory, averagedHistory, ServerLimits.DEFAULT);
+    }
+
+    /**
+     * Constructs a server with the specified limits.
+     *
+     * @param ipAddress       address the server listens on
+     * @param port            port the server listens on
+     * @param localHistory    history of measurements generated by this sensor
+     * @param averagedHistory history of measurements averaged with the closest sensor
+     * @param limits          admission control limits
+     */
+    public ServerThread(String ipAddress, int port,
+                        MeasurementHistory localHistory, MeasurementHistory averagedHistory, ServerLimits limits) {
+        this.ipAddress = ipAddress;
+        this.port = port;
+        this.sensorId = Loaders.getSensorId(port);
+        this.localHistory = localHistory;
+        this.averagedHistory = averagedHistory;
+        this.limits = limits;
+        this.threadPool = new ThreadPoolExecutor(
+                limits.getMaxConnections(), limits.getMaxConnections(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(limits.getMaxQueuedConnections()),
+                (runnable, executor) -> ((ClientWorker) runnable).reject()
+        );
+        this.subscriptionPool = new ThreadPoolExecutor(
+                limits.getMaxSubscriptions(), limits.getMaxSubscriptions(), 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                (runnable, executor) -> ((SubscriptionWorker) runnable).reject()
+        );
+    }
 
     @Override
     public void run() {
         try (ServerSocket serverSocket = new ServerSocket()) {
-            serverSocket.bind(new InetSocketAddress(ipAddress, port));
-            serverSocket.setSoTimeout(1000);
+            serverSocket.bind(new InetSocketAddress(ipAddress, port), ACCEPT_BACKLOG);
+            serverSocket.setSoTimeout(HOUSEKEEPING_INTERVAL_MILLIS);
 
+            long lastHousekeeping = System.currentTimeMillis();
             while (!Thread.currentThread().isInterrupted()) {
                 try {
                     acceptClient(serverSocket);
-                } catch (SocketTimeoutException e) {
-                    continue;
+                } catch (SocketTimeoutException ignorable) {}
+
+                long now = System.currentTimeMillis();
+                if (now - lastHousekeeping >= HOUSEKEEPING_INTERVAL_MILLIS) {
+                    lastHousekeeping = now;
+                    housekeep(now);
                 }
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
-            threadPool.shutdown();
+            threadPool.shutdownNow();
+            subscriptionPool.shutdownNow();
         }
     }
 
@@ -73,11 +158,91 @@ public class ServerThread extends Thread {
     private void acceptClient(ServerSocket serverSocket) throws IOException {
         Socket clientSocket = serverSocket.accept();
         ClientWorker cw = new ClientWorker(clientSocket);
-        threadPool.submit(cw);
+        threadPool.execute(cw);
 
         log.info("Accepted {}", clientSocket);
     }
 
+    /**
+     * Closes subscriptions whose push has been blocked for too long.
+     *
+     * @param now current time, in milliseconds
+     */
+    private void housekeep(long now) {
+        subscriptions.forEach(subscription -> subscription.closeIfStalled(now));
+    }
+
+    /**
+     * Responds to the client that this sensor is busy and closes the connection.
+     *
+     * @param socket the client socket
+     */
+    private static void respondBusy(Socket socket) {
+        try (Socket s = socket) {
+            s.getOutputStream().write((BUSY_KEYWORD + System.lineSeparator()).getBytes());
+        } catch (IOException ignorable) {}
+    }
+
+    /**
+     * Returns the number of connections rejected because the server was full.
+     *
+     * @return the number of rejected connections
+     */
+    @ToString.Include(name = "rejectedConnections")
+    public long getRejectedConnections() {
+        return rejectedConnections.get();
+    }
+
+    /**
+     * Returns the number of requests rejected because a peer exceeded its rate limit.
+     *
+     * @return the number of rate limited requests
+     */
+    @ToString.Include(name = "rateLimitedRequests")
+    public long getRateLimitedRequests() {
+        return rateLimitedRequests.get();
+    }
+
+    /**
+     * Returns the number of connections closed because they were idle for too long.
+     *
+     * @return the number of idle connections
+     */
+    @ToString.Include(name = "idleConnections")
+    public long getIdleConnections() {
+        return idleConnections.get();
+    }
+
+    /**
+     * Returns the number of connections currently being served.
+     *
+     * @return the number of active connections
+     */
+    @ToString.Include(name = "activeConnections")
+    public int getActiveConnections() {
+        return threadPool.getActiveCount();
+    }
+
+    /**
+     * Returns the number of accepted connections waiting to be served.
+     *
+     * @return the number of queued connections
+     */
+    @ToString.Include(name = "queueDepth")
+    public int getQueueDepth() {
+        return threadPool.getQueue().size();
+    }
+
+    /**
+     * Returns the number of subscribed clients currently being pushed measurements.
+     *
+     * @return the number of active subscriptions
+     */
+    @ToString.Include(name = "activeSubscriptions")
+    public int getActiveSubscriptions() {
+        return subscriptions.size();
+    }
+
     /**
      * Runnable object that serves other sensors.
      *
@@ -87,10 +252,35 @@ public class ServerThread extends Thread {
     private class ClientWorker implements Runnable {
         /** The client socket. */
         private final Socket clientSocket;
+        /** Time when the client socket was accepted. */
+        private final long acceptTime = System.currentTimeMillis();
+        /**
+         * Request rate limiter of this connection. Sensors on the same host
+         * share an address, so a peer is identified by its connection, and
+         * the number of connections is bounded by the thread pool.
+         */
+        private final RateLimiter rateLimiter = new RateLimiter(limits.getRequestsPerSecond(), limits.getRequestBurst());
+
+        /**
+         * Rejects the client by responding that this sensor is busy
+         * and closing the connection.
+         */
+        private void reject() {
+            rejectedConnections.incrementAndGet();
+            log.warn("Rejecting {}, queue depth: {}", clientSocket, getQueueDepth());
+            respondBusy(clientSocket);
+        }
 
         @Override
         public void run() {
+            if (System.currentTimeMillis() - acceptTime > limits.getMaxQueueWaitMillis()) {
+                reject();
+                return;
+            }
+
+            boolean subscribed = false;
             try {
+                clientSocket.setSoTimeout(limits.getIdleTimeoutMillis());
                 BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
                 PrintWriter out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()), true);
 
@@ -98,22 +288,232 @@ public class ServerThread extends Thread {
                 while (!Thread.currentThread().isInterrupted()) {
                     String line = in.readLine();
                     if (line == null) break;
-                    if (!line.equals(GET_MEASUREMENT_KEYWORD)) continue;
-                    log.info("Serving {}", clientSocket);
 
-                    int secondsActive = Math.toIntExact((System.currentTimeMillis() - startTime) / 1000);
-                    Measurement measurement = Loaders.getMeasurementLoader().getMeasurement(secondsActive % 100);
+                    if (!rateLimiter.tryAcquire()) {
+                        rateLimitedRequests.incrementAndGet();
+                        log.warn("Rate limit exceeded by {}", clientSocket);
+                        out.println(BUSY_KEYWORD);
+                        continue;
+                    }
+
+                    if (line.equals(SUBSCRIBE_MEASUREMENT_KEYWORD)) {
+                        // Hand the connection over so it does not hold a connection slot
+                        subscribed = true;
+                        subscriptionPool.execute(new SubscriptionWorker(clientSocket, in, out));
+                        break;
+                    }
 
-                    Gson gson = new Gson();
-                    String json = gson.toJson(measurement);
+                    if (line.startsWith(GET_HISTORY_KEYWORD)) {
+                        log.info("Serving history to {}", clientSocket);
+                        out.println(new Gson().toJson(getHistory(line)));
+                        continue;
+                    }
 
-                    out.println(json);
+                    if (!line.equals(GET_MEASUREMENT_KEYWORD)) continue;
+                    log.info("Serving {}", clientSocket);
+
+                    out.println(new Gson().toJson(getCurrentMeasurement()));
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            } catch (SocketTimeoutException e) {
+                idleConnections.incrementAndGet();
+                log.info("Closing idle connection {}", clientSocket);
+            } catch (IOException e) {
+                // Peer has reset or broken the connection, which must not kill the pool thread
+                log.info("Connection {} failed: {}", clientSocket, e.toString());
             } finally {
+                if (!subscribed) {
+                    try { clientSocket.close(); } catch (IOException ignorable) {}
+                }
                 log.info("Finished serving {}", clientSocket);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runnable object that pushes measurements to a subscribed sensor.
+     */
+    @RequiredArgsConstructor
+    private class SubscriptionWorker implements Runnable {
+        /** The client socket. */
+        private final Socket clientSocket;
+        /** Reader from the client, which may have buffered input. */
+        private final BufferedReader in;
+        /** Writer to the client. */
+        private final PrintWriter out;
+        /** Time when the current push started, or 0 if no push is in progress. */
+        private volatile long pushStartTime;
+
+        /**
+         * Rejects the subscription by responding that this sensor is busy
+         * and closing the connection.
+         */
+        private void reject() {
+            rejectedConnections.incrementAndGet();
+            log.warn("Rejecting subscription {}, active subscriptions: {}", clientSocket, getActiveSubscriptions());
+            respondBusy(clientSocket);
+        }
+
+        @Override
+        public void run() {
+            subscriptions.add(this);
+            log.info("Subscribed {}", clientSocket);
+
+            try (Socket socket = clientSocket) {
+                pushMeasurements();
+            } catch (IOException e) {
+                log.info("Subscription {} failed: {}", clientSocket, e.toString());
+            } finally {
+                subscriptions.remove(this);
+                log.info("Unsubscribed {}", clientSocket);
+            }
+        }
+
+        /**
+         * Pushes the current measurement to the subscribed client every
+         * {@value #PUSH_INTERVAL_MILLIS} ms, even if it has not changed, so the
+         * client can tell a silent link from an unchanged measurement.
+         * <b>Blocks</b> the thread until the client disconnects, a push
+         * fails or the thread is interrupted.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        private void pushMeasurements() throws IOException {
+            Gson gson = new Gson();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                pushStartTime = System.currentTimeMillis();
+                out.println(gson.toJson(getCurrentMeasurement()));
+                pushStartTime = 0;
+                if (out.checkError()) return; // client has disconnected or the push timed out
+
+                long elapsedMillis = System.currentTimeMillis() - startTime;
+                if (!awaitNextPush(PUSH_INTERVAL_MILLIS - elapsedMillis % PUSH_INTERVAL_MILLIS)) return;
+            }
+        }
+
+        /**
+         * Waits for the specified time while reading from the client, so
+         * that a disconnected client is noticed between pushes. Anything
+         * the client sends is discarded.
+         *
+         * @param waitMillis time to wait, in milliseconds
+         * @return true if the client is still connected, false otherwise
+         * @throws IOException if an I/O error occurs
+         */
+        private boolean awaitNextPush(long waitMillis) throws IOException {
+            long deadline = System.currentTimeMillis() + waitMillis;
+            for (long remaining = waitMillis; remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+                clientSocket.setSoTimeout(Math.toIntExact(remaining));
+                try {
+                    if (in.read() == -1) return false;
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Closes the connection if the current push has been blocked for
+         * longer than the push write timeout, which makes the push fail.
+         *
+         * @param now current time, in milliseconds
+         */
+        private void closeIfStalled(long now) {
+            long start = pushStartTime;
+            if (start == 0 || now - start <= limits.getPushWriteTimeoutMillis()) return;
+
+            log.warn("Closing subscription {}, push blocked for {} ms", clientSocket, now - start);
+            try { clientSocket.close(); } catch (IOException ignorable) {}
+        }
+    }
+
+    /**
+     * Returns the history samples requested by the specified command line in
+     * format <tt>GET_HISTORY &lt;LOCAL|AVERAGED&gt; &lt;fromMillis&gt; &lt;toMillis&gt;</tt>.
+     * Returns a new empty list if the command is malformed, since Gson can
+     * not serialize {@link java.util.Collections#emptyList()} on a JDK with
+     * strong encapsulation.
+     *
+     * @param line command line that requests the history
+     * @return the requested history samples
+     */
+    private List<MeasurementHistory.Sample> getHistory(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        if (tokens.length != 4 || !tokens[0].equals(GET_HISTORY_KEYWORD)) {
+            log.warn("Malformed history request: {}", line);
+            return new ArrayList<>();
+        }
+
+        MeasurementHistory history;
+        switch (tokens[1].toUpperCase()) {
+            case "LOCAL":    history = localHistory;    break;
+            case "AVERAGED": history = averagedHistory; break;
+            default:
+                log.warn("Unknown history type: {}", tokens[1]);
+                return new ArrayList<>();
+        }
+
+        try {
+            return history.getRange(Long.parseLong(tokens[2]), Long.parseLong(tokens[3]));
+        } catch (NumberFormatException e) {
+            log.warn("Malformed history range: {}", line);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns the index of the measurement this sensor currently serves,
+     * based on the number of seconds it has been active.
+     *
+     * @return the index of the current measurement
+     */
+    private int getCurrentIndex() {
+        int secondsActive = Math.toIntExact((System.currentTimeMillis() - startTime) / 1000);
+        return secondsActive % Loaders.getMeasurementLoader().size();
+    }
+
+    /**
+     * Returns the measurement this sensor currently serves.
+     *
+     * @return the current measurement
+     */
+    private Measurement getCurrentMeasurement() {
+        return Loaders.getMeasurementLoader().getMeasurement(sensorId, getCurrentIndex());
+    }
+
+    /**
+     * Token bucket that limits the rate of requests of a single connection.
+     */
+    private static class RateLimiter {
+        /** Number of tokens added per millisecond. */
+        private final double tokensPerMilli;
+        /** Maximum number of tokens. */
+        private final double capacity;
+        /** Number of currently available tokens. */
+        private double tokens;
+        /** Time of the last refill, in milliseconds. */
+        private long lastRefill = System.currentTimeMillis();
+
+        private RateLimiter(double tokensPerSecond, double capacity) {
+            this.tokensPerMilli = tokensPerSecond / 1000;
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /**
+         * Takes a token if one is available.
+         *
+         * @return true if a token was taken, false if the rate limit is exceeded
+         */
+        private synchronized boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMilli);
+            lastRefill = now;
+
+            if (tokens < 1) return false;
+            tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package hr.fer.ztel.rassus.dz1.client.thread;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.BUSY_KEYWORD;
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.SUBSCRIBE_MEASUREMENT_KEYWORD;
+
+/**
+ * Thread that subscribes to measurements of another sensor client
+ * and keeps the latest pushed measurement with its arrival time.
+ * The subscription ends if the sensor stays silent for longer than
+ * the read timeout.
+ */
+@Log4j2
+@ToString
+public class SubscriptionThread extends Thread {
+
+    /** Sensor whose measurements are subscribed to. */
+    @Getter private final Sensor sensor;
+    /** Time to wait for a connection with the sensor, in milliseconds. */
+    @Getter private final int connectTimeoutMillis;
+    /** Time to wait for the next pushed measurement, in milliseconds. */
+    @Getter private final int readTimeoutMillis;
+    /** Latest measurement pushed by the sensor and its arrival time, or <tt>null</tt> if none arrived yet. */
+    @ToString.Exclude
+    private final AtomicReference<MeasurementHistory.Sample> latestSample = new AtomicReference<>();
+    /** Socket connected to the sensor. */
+    @ToString.Exclude
+    private volatile Socket socket;
+
+    public SubscriptionThread(Sensor sensor, int connectTimeoutMillis, int readTimeoutMillis) {
+        super("SubscriptionThread-" + sensor.getUsername());
+        this.sensor = sensor;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket()) {
+            this.socket = socket;
+            socket.connect(new InetSocketAddress(sensor.getIpAddress(), sensor.getPort()), connectTimeoutMillis);
+            socket.setSoTimeout(readTimeoutMillis);
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+            // Signalize the subscription and receive measurements until the connection closes
+            out.println(SUBSCRIBE_MEASUREMENT_KEYWORD);
+
+            Gson gson = new Gson();
+            while (!Thread.currentThread().isInterrupted()) {
+                String json = in.readLine();
+                if (json == null) break;
+                if (json.equals(BUSY_KEYWORD)) {
+                    log.warn("Sensor is busy, subscription rejected: {}", sensor.getUsername());
+                    break;
+                }
+                Measurement measurement = gson.fromJson(json, Measurement.class);
+                latestSample.set(new MeasurementHistory.Sample(System.currentTimeMillis(), measurement));
+            }
+        } catch (SocketTimeoutException e) {
+            log.warn("No measurement pushed by {} within {} ms", sensor.getUsername(), readTimeoutMillis);
+        } catch (IOException e) {
+            if (!isInterrupted()) {
+                log.warn("Subscription to {} failed", sensor, e);
+            }
+        } catch (JsonSyntaxException e) {
+            log.error("Malformed json syntax", e);
+        } finally {
+            log.info("Unsubscribed from sensor: {}", sensor.getUsername());
+        }
+    }
+
+    /**
+     * Returns the latest measurement pushed by the sensor, without any
+     * network wait. Returns <tt>null</tt> if no measurement arrived yet
+     * or if the latest one is older than <tt>maxAgeMillis</tt>.
+     *
+     * @param maxAgeMillis maximum age of the measurement, in milliseconds
+     * @return the latest pushed measurement, or <tt>null</tt> if none is recent enough
+     */
+    public Measurement getLatestMeasurement(long maxAgeMillis) {
+        MeasurementHistory.Sample sample = latestSample.get();
+        if (sample == null || System.currentTimeMillis() - sample.getTimestamp() > maxAgeMillis) {
+            return null;
+        }
+        return sample.getMeasurement();
+    }
+
+    /**
+     * Cancels the subscription and closes the connection with the sensor.
+     */
+    public void cancel() {
+        interrupt();
+        Socket socket = this.socket;
+        if (socket != null) {
+            try { socket.close(); } catch (IOException ignorable) {}
+        }
+    }
+}
@@ -53,6 +53,15 @@ public class Cache<V> {
         return !isExpired() ? value : null;
     }
 
+    /**
+     * Returns the value of this cache, even if it is expired.
+     *
+     * @return the value associated with this cache
+     */
+    public V getValue() {
+        return value;
+    }
+
     /**
      * Returns true if the value associated with this cache is expired,
      * false otherwise.
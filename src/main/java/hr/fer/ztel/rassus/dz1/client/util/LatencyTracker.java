@@ -0,0 +1,55 @@
+package hr.fer.ztel.rassus.dz1.client.util;
+
+import java.util.Arrays;
+
+/**
+ * Tracker of the most recent latencies that estimates their percentiles.
+ * Latencies may be in any unit, as long as the same unit is used for
+ * recording them and for the percentile default.
+ */
+public class LatencyTracker {
+
+    /** Most recent latencies. */
+    private final long[] latencies;
+    /** Total number of recorded latencies. */
+    private long count;
+
+    /**
+     * Constructs an instance of {@code LatencyTracker} that keeps the
+     * specified number of most recent latencies.
+     *
+     * @param capacity number of most recent latencies kept
+     */
+    public LatencyTracker(int capacity) {
+        this.latencies = new long[capacity];
+    }
+
+    /**
+     * Records a latency, replacing the oldest one if the tracker is full.
+     *
+     * @param latency latency to record
+     */
+    public synchronized void record(long latency) {
+        latencies[(int) (count++ % latencies.length)] = latency;
+    }
+
+    /**
+     * Returns the specified percentile of the recorded latencies, or
+     * <tt>defaultLatency</tt> if no latencies were recorded yet.
+     *
+     * @param percentile     percentile between 0 and 100
+     * @param defaultLatency value returned if there are no latencies
+     * @return the percentile of the recorded latencies
+     */
+    public synchronized long percentile(double percentile, long defaultLatency) {
+        int size = (int) Math.min(count, latencies.length);
+        if (size == 0) {
+            return defaultLatency;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+}
@@ -0,0 +1,208 @@
+package hr.fer.ztel.rassus.dz1.client.util;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-capacity ring buffer of timestamped measurements, stored as
+ * fixed-width records in primitive arrays. Only one thread may append
+ * measurements, while any number of threads may read them without locking.
+ * Readers never see a record that is being overwritten; such records are
+ * skipped instead.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class MeasurementHistory {
+
+    /** Fields of a measurement, in order of their index in a record. */
+    private static final MeasurementField[] FIELDS = MeasurementField.values();
+    /** Index of the presence mask of fields in a record. */
+    private static final int MASK_INDEX = FIELDS.length;
+    /** Number of integers in a record: all fields and a presence mask. */
+    private static final int RECORD_INTS = FIELDS.length + 1;
+    /** Sequence number of a slot that is being written. */
+    private static final long WRITING = -1;
+
+    /** Maximum number of records kept. */
+    @Getter @ToString.Include private final int capacity;
+    /** Sequence number of the record in each slot. */
+    private final AtomicLongArray sequences;
+    /** Timestamp of the record in each slot, in milliseconds. */
+    private final AtomicLongArray timestamps;
+    /** Field values of the record in each slot. */
+    private final AtomicIntegerArray values;
+    /** Total number of appended records. */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Constructs an instance of {@code MeasurementHistory} with the specified capacity.
+     *
+     * @param capacity maximum number of records kept
+     */
+    public MeasurementHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.sequences = new AtomicLongArray(capacity);
+        this.timestamps = new AtomicLongArray(capacity);
+        this.values = new AtomicIntegerArray(capacity * RECORD_INTS);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, WRITING);
+        }
+    }
+
+    /**
+     * Appends the measurement to this history, overwriting the oldest record
+     * if the history is full. Must only be called from a single thread.
+     *
+     * @param timestamp   time of the measurement, in milliseconds
+     * @param measurement measurement to be appended
+     */
+    public void append(long timestamp, Measurement measurement) {
+        long seq = head.get();
+        int slot = (int) (seq % capacity);
+        int base = slot * RECORD_INTS;
+
+        sequences.set(slot, WRITING);
+        timestamps.lazySet(slot, timestamp);
+        int mask = 0;
+        for (MeasurementField field : FIELDS) {
+            Integer value = field.get(measurement);
+            values.lazySet(base + field.ordinal(), value != null ? value : 0);
+            if (value != null) mask |= 1 << field.ordinal();
+        }
+        values.lazySet(base + MASK_INDEX, mask);
+        sequences.set(slot, seq);
+        head.set(seq + 1);
+    }
+
+    /**
+     * Returns the number of records currently kept.
+     *
+     * @return the number of records currently kept
+     */
+    @ToString.Include
+    public int size() {
+        return (int) Math.min(head.get(), capacity);
+    }
+
+    /**
+     * Returns up to <tt>n</tt> most recent samples, from oldest to newest.
+     *
+     * @param n maximum number of samples
+     * @return up to <tt>n</tt> most recent samples
+     */
+    public List<Sample> getLast(int n) {
+        long end = head.get();
+        long start = Math.max(end - Math.min(n, capacity), 0);
+
+        List<Sample> samples = new ArrayList<>();
+        int[] record = new int[RECORD_INTS];
+        for (long seq = start; seq < end; seq++) {
+            long timestamp = readRecord(seq, record);
+            if (timestamp != WRITING) {
+                samples.add(new Sample(timestamp, toMeasurement(record)));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the samples with timestamp between <tt>fromMillis</tt> and
+     * <tt>toMillis</tt>, both inclusive, from oldest to newest.
+     *
+     * @param fromMillis lower bound of the timestamp, in milliseconds
+     * @param toMillis   upper bound of the timestamp, in milliseconds
+     * @return the samples within the time range
+     */
+    public List<Sample> getRange(long fromMillis, long toMillis) {
+        long end = head.get();
+        long start = Math.max(end - capacity, 0);
+
+        List<Sample> samples = new ArrayList<>();
+        int[] record = new int[RECORD_INTS];
+        for (long seq = start; seq < end; seq++) {
+            long timestamp = readRecord(seq, record);
+            if (timestamp != WRITING && timestamp >= fromMillis && timestamp <= toMillis) {
+                samples.add(new Sample(timestamp, toMeasurement(record)));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Returns count, minimum, maximum and average of the specified field
+     * over up to <tt>n</tt> most recent samples. Samples in which an
+     * optional field is absent are not counted for that field.
+     *
+     * @param field field to be aggregated
+     * @param n     maximum number of samples
+     * @return statistics of the field over the window
+     */
+    public IntSummaryStatistics aggregate(MeasurementField field, int n) {
+        long end = head.get();
+        long start = Math.max(end - Math.min(n, capacity), 0);
+
+        IntSummaryStatistics stats = new IntSummaryStatistics();
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) (seq % capacity);
+            int base = slot * RECORD_INTS;
+
+            if (sequences.get(slot) != seq) continue;
+            int value = values.get(base + field.ordinal());
+            boolean present = (values.get(base + MASK_INDEX) & 1 << field.ordinal()) != 0;
+            if (sequences.get(slot) != seq) continue;
+
+            if (present) stats.accept(value);
+        }
+        return stats;
+    }
+
+    /**
+     * Copies the record with the specified sequence number into <tt>record</tt>
+     * and returns its timestamp, or {@link #WRITING} if the record was
+     * overwritten before or while it was read.
+     */
+    private long readRecord(long seq, int[] record) {
+        int slot = (int) (seq % capacity);
+        int base = slot * RECORD_INTS;
+
+        if (sequences.get(slot) != seq) return WRITING;
+        long timestamp = timestamps.get(slot);
+        for (int i = 0; i < RECORD_INTS; i++) {
+            record[i] = values.get(base + i);
+        }
+        if (sequences.get(slot) != seq) return WRITING;
+
+        return timestamp;
+    }
+
+    private static Measurement toMeasurement(int[] record) {
+        Measurement.MeasurementBuilder builder = Measurement.builder();
+        for (MeasurementField field : FIELDS) {
+            boolean present = (record[MASK_INDEX] & 1 << field.ordinal()) != 0;
+            field.set(builder, present ? record[field.ordinal()] : null);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Measurement along with the time it was taken.
+     */
+    @Value
+    public static class Sample {
+        private final long timestamp;
+        private final Measurement measurement;
+    }
+}
@@ -0,0 +1,142 @@
+package hr.fer.ztel.rassus.dz1.client.util;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prefetcher class that fetches a value in the background ahead of its use
+ * and serves the last fetched value while a refresh is still in progress,
+ * as long as it is not older than the maximum staleness.
+ */
+@Log4j2
+@ToString(onlyExplicitlyIncluded = true)
+public class Prefetcher<V> {
+
+    /** Executor service that runs the fetch tasks. */
+    private final ScheduledExecutorService executor;
+    /** Latest fetched value, or <tt>null</tt> if nothing was fetched yet. */
+    private final AtomicReference<Entry<V>> entry = new AtomicReference<>();
+    /** Generation of the latest scheduled fetch. */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Maximum age of a value that may still be served, in milliseconds. */
+    @Getter @Setter @ToString.Include private volatile long maxStalenessMillis;
+
+    /** Number of values served from a fetch that finished in time. */
+    private final AtomicLong freshHits = new AtomicLong();
+    /** Number of values served from an older fetch while a refresh was not finished. */
+    private final AtomicLong staleHits = new AtomicLong();
+    /** Number of times no value within the maximum staleness was available. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs an instance of {@code Prefetcher} with the specified maximum staleness.
+     *
+     * @param executor           executor service that runs the fetch tasks
+     * @param maxStalenessMillis maximum age of a value that may still be served, in milliseconds
+     */
+    public Prefetcher(ScheduledExecutorService executor, long maxStalenessMillis) {
+        this.executor = executor;
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * Schedules the <tt>fetcher</tt> to run after the specified delay and to
+     * replace the current value with the fetched one. Failed fetches keep
+     * the current value.
+     *
+     * @param fetcher     task that fetches the value
+     * @param delayMillis delay before fetching, in milliseconds
+     */
+    public void schedule(Callable<V> fetcher, long delayMillis) {
+        long scheduledGeneration = generation.incrementAndGet();
+        executor.schedule(() -> {
+            try {
+                V value = fetcher.call();
+                if (value != null) {
+                    entry.set(new Entry<>(value, System.currentTimeMillis(), scheduledGeneration));
+                }
+            } catch (Exception e) {
+                log.warn("Prefetch failed", e);
+            }
+        }, Math.max(delayMillis, 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the latest fetched value if it is not older than the maximum
+     * staleness. Otherwise it returns <tt>null</tt>.
+     *
+     * @return the latest fetched value, or <tt>null</tt> if too stale or absent
+     */
+    public V get() {
+        Entry<V> current = entry.get();
+        if (current == null || System.currentTimeMillis() - current.fetchTime > maxStalenessMillis) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (current.generation == generation.get()) {
+            freshHits.incrementAndGet();
+        } else {
+            staleHits.incrementAndGet();
+        }
+        return current.value;
+    }
+
+    /**
+     * Discards the current value, so it is never served again.
+     */
+    public void clear() {
+        entry.set(null);
+    }
+
+    /**
+     * Returns the age of the current value in milliseconds,
+     * or <tt>-1</tt> if nothing was fetched yet.
+     *
+     * @return the age of the current value, or <tt>-1</tt> if absent
+     */
+    @ToString.Include(name = "ageMillis")
+    public long getAgeMillis() {
+        Entry<V> current = entry.get();
+        return current != null ? System.currentTimeMillis() - current.fetchTime : -1;
+    }
+
+    @ToString.Include(name = "freshHits")
+    public long getFreshHits() {
+        return freshHits.get();
+    }
+
+    @ToString.Include(name = "staleHits")
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    @ToString.Include(name = "misses")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Immutable fetched value along with its fetch time and generation.
+     */
+    private static class Entry<V> {
+        private final V value;
+        private final long fetchTime;
+        private final long generation;
+
+        private Entry(V value, long fetchTime, long generation) {
+            this.value = value;
+            this.fetchTime = fetchTime;
+            this.generation = generation;
+        }
+    }
+}
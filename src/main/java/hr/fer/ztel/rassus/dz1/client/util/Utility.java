@@ -9,6 +9,15 @@ public class Utility {
 
     /** Keyword used between two sensor clients to obtain a measurement over the network. */
     public static final String GET_MEASUREMENT_KEYWORD = "GET_MEASUREMENT";
+    /** Keyword used between two sensor clients to subscribe to measurements pushed over the network. */
+    public static final String SUBSCRIBE_MEASUREMENT_KEYWORD = "SUBSCRIBE_MEASUREMENT";
+    /**
+     * Keyword used between two sensor clients to obtain a range of measurement history over the network,
+     * followed by history type (<tt>LOCAL</tt> or <tt>AVERAGED</tt>) and time range in milliseconds.
+     */
+    public static final String GET_HISTORY_KEYWORD = "GET_HISTORY";
+    /** Keyword sent by a sensor client that is too busy to serve a request. */
+    public static final String BUSY_KEYWORD = "BUSY";
     /** Sleep time for retry logic, in milliseconds. */
     private static final long RETRY_LOGIC_SLEEP_MILLIS = 1000;
 
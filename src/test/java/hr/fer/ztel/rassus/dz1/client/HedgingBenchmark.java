@@ -0,0 +1,101 @@
+package hr.fer.ztel.rassus.dz1.client;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+import hr.fer.ztel.rassus.dz1.client.util.LatencyTracker;
+
+/**
+ * Benchmark of measurement cycle tail latency with a slow closest sensor,
+ * before and after hedging. The closest sensor is a {@link SlowPeerStub}
+ * that delays a fraction of its answers.
+ * <p>
+ * Without a backup sensor every slow answer is waited for. With hedging,
+ * a fast peer that was the closest sensor before is kept as backup and
+ * asked when the closest sensor does not answer in time. The backup is
+ * set up by letting the cached closest sensor expire, which takes
+ * {@value #CLOSEST_SENSOR_CACHE_MILLIS} ms, since the server only reports
+ * the closest sensor. The backup is then kept until it cannot be connected
+ * to.
+ * <p>
+ * Run with
+ * <tt>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=hr.fer.ztel.rassus.dz1.client.HedgingBenchmark
+ * -Dexec.args="[cycles] [slowProbability] [slowMillis]"</tt>.
+ */
+public class HedgingBenchmark {
+
+    /** Default number of measured cycles per run. */
+    private static final int DEFAULT_CYCLES = 100;
+    /** Default probability that the closest sensor answers slowly. */
+    private static final double DEFAULT_SLOW_PROBABILITY = 0.1;
+    /** Default delay of a slow answer, in milliseconds. */
+    private static final long DEFAULT_SLOW_MILLIS = 1500;
+    /** Time after which the client asks the server for the closest sensor again, with a margin. */
+    private static final long CLOSEST_SENSOR_CACHE_MILLIS = 25_000;
+
+    /** Disable instantiation. */
+    private HedgingBenchmark() {}
+
+    /**
+     * Benchmark entry point.
+     *
+     * @param args number of cycles, probability of a slow answer and its delay
+     */
+    public static void main(String[] args) throws Exception {
+        int cycles = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_CYCLES;
+        double slowProbability = args.length >= 2 ? Double.parseDouble(args[1]) : DEFAULT_SLOW_PROBABILITY;
+        long slowMillis = args.length >= 3 ? Long.parseLong(args[2]) : DEFAULT_SLOW_MILLIS;
+
+        Measurement measurement = Measurement.builder().temperature(20).pressure(1000).humidity(50).build();
+        try (SlowPeerStub slowPeer = new SlowPeerStub(measurement, slowProbability, slowMillis, 42);
+             SlowPeerStub fastPeer = new SlowPeerStub(measurement, 0, 0, 42);
+             StubServer server = new StubServer()) {
+            Sensor slowSensor = new Sensor("localhost", slowPeer.getPort());
+            Sensor fastSensor = new Sensor("localhost", fastPeer.getPort());
+
+            // Before: the slow sensor has been the closest from the start
+            server.setClosestSensor(slowSensor);
+            SensorClient client = new SensorClient("localhost", StubServer.getFreePort(), "localhost", server.getPort());
+            client.registerToServer();
+            String before = run("before", client, cycles);
+            client.shutdown();
+
+            // After: the fast sensor was the closest and is kept as backup
+            server.setClosestSensor(fastSensor);
+            client = new SensorClient("localhost", StubServer.getFreePort(), "localhost", server.getPort());
+            client.registerToServer();
+            client.measure();
+            System.out.printf("Waiting %d s for the closest sensor to change...%n", CLOSEST_SENSOR_CACHE_MILLIS / 1000);
+            Thread.sleep(CLOSEST_SENSOR_CACHE_MILLIS);
+            server.setClosestSensor(slowSensor);
+            String after = run("after", client, cycles);
+            client.shutdown();
+
+            System.out.printf("slow answers: %.0f%% delayed by %d ms%n", slowProbability * 100, slowMillis);
+            System.out.print(before);
+            System.out.print(after);
+        }
+        System.exit(0);
+    }
+
+    private static String run(String name, SensorClient client, int cycles) throws Exception {
+        LatencyTracker tracker = new LatencyTracker(cycles);
+        long hedgedRequests = client.getHedgedRequests();
+        long hedgeWins = client.getHedgeWins();
+        for (int i = 0; i < cycles; i++) {
+            long start = System.nanoTime();
+            client.measure();
+            tracker.record((System.nanoTime() - start) / 1000);
+        }
+
+        return String.format("%-6s cycles=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms hedged=%d wins=%d hedgeDelay=%dms%n",
+                name, cycles,
+                tracker.percentile(50, 0) / 1000.0,
+                tracker.percentile(95, 0) / 1000.0,
+                tracker.percentile(99, 0) / 1000.0,
+                tracker.percentile(100, 0) / 1000.0,
+                client.getHedgedRequests() - hedgedRequests,
+                client.getHedgeWins() - hedgeWins,
+                client.getHedgeDelayMillis());
+    }
+}
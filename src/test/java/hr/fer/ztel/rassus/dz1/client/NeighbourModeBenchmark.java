@@ -0,0 +1,105 @@
+package hr.fer.ztel.rassus.dz1.client;
+
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+import hr.fer.ztel.rassus.dz1.client.proxy.FaultConfig;
+import hr.fer.ztel.rassus.dz1.client.proxy.FaultInjectionProxy;
+import hr.fer.ztel.rassus.dz1.client.thread.ServerThread;
+import hr.fer.ztel.rassus.dz1.client.util.LatencyTracker;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+import hr.fer.ztel.rassus.dz1.client.util.Prefetcher;
+
+/**
+ * Benchmark of measurement cycle latency in the pull, push and prefetch
+ * neighbour modes. A sensor client measures against a {@link StubServer}
+ * and a local {@link ServerThread} neighbour, reached through a proxy that
+ * adds network latency, and the percentiles of <tt>measure()</tt> are
+ * printed per mode. The client measures every {@value #CYCLE_PAUSE_MILLIS}
+ * ms, so in prefetch mode the measurement for the next cycle is fetched
+ * right after each cycle, and its prefetch hits and misses are printed.
+ * <p>
+ * Run with
+ * <tt>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=hr.fer.ztel.rassus.dz1.client.NeighbourModeBenchmark
+ * -Dexec.args="[cycles] [latencyMillis]"</tt>.
+ */
+public class NeighbourModeBenchmark {
+
+    /** Default number of measured cycles per mode. */
+    private static final int DEFAULT_CYCLES = 50;
+    /** Default latency added by the proxy to each chunk, in milliseconds. */
+    private static final long DEFAULT_LATENCY_MILLIS = 20;
+    /** Number of cycles before measuring, which also let a subscription receive its first push. */
+    private static final int WARMUP_CYCLES = 5;
+    /** Pause between two cycles, in milliseconds. */
+    private static final long CYCLE_PAUSE_MILLIS = 100;
+
+    /** Disable instantiation. */
+    private NeighbourModeBenchmark() {}
+
+    /**
+     * Benchmark entry point.
+     *
+     * @param args number of cycles and latency added to the neighbour link
+     */
+    public static void main(String[] args) throws Exception {
+        int cycles = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_CYCLES;
+        long latencyMillis = args.length >= 2 ? Long.parseLong(args[1]) : DEFAULT_LATENCY_MILLIS;
+
+        int neighbourPort = StubServer.getFreePort();
+        ServerThread neighbour = new ServerThread("localhost", neighbourPort,
+                new MeasurementHistory(16), new MeasurementHistory(16));
+        neighbour.setDaemon(true);
+        neighbour.start();
+
+        FaultConfig config = FaultConfig.builder().latencyMillis(latencyMillis).build();
+        try (FaultInjectionProxy proxy = new FaultInjectionProxy("localhost", 0, "localhost", neighbourPort, config);
+             StubServer server = new StubServer()) {
+            proxy.start();
+            server.setClosestSensor(new Sensor("localhost", proxy.getPort()));
+
+            SensorClient client = new SensorClient("localhost", StubServer.getFreePort(), "localhost", server.getPort());
+            client.setMeasureIntervalMillis(CYCLE_PAUSE_MILLIS);
+            client.registerToServer();
+
+            StringBuilder results = new StringBuilder();
+            for (SensorClient.NeighbourMode mode : new SensorClient.NeighbourMode[] {
+                    SensorClient.NeighbourMode.PULL, SensorClient.NeighbourMode.PUSH,
+                    SensorClient.NeighbourMode.PREFETCH}) {
+                client.setNeighbourMode(mode);
+                for (int i = 0; i < WARMUP_CYCLES; i++) {
+                    client.measure();
+                    Thread.sleep(CYCLE_PAUSE_MILLIS);
+                }
+
+                LatencyTracker tracker = new LatencyTracker(cycles);
+                Prefetcher<?> prefetcher = client.getPrefetcher();
+                long freshHits = prefetcher.getFreshHits();
+                long staleHits = prefetcher.getStaleHits();
+                long misses = prefetcher.getMisses();
+                for (int i = 0; i < cycles; i++) {
+                    long start = System.nanoTime();
+                    client.measure();
+                    tracker.record((System.nanoTime() - start) / 1000);
+                    Thread.sleep(CYCLE_PAUSE_MILLIS);
+                }
+
+                results.append(String.format("%-8s cycles=%d latency=%dms p50=%.2fms p95=%.2fms max=%.2fms",
+                        mode, cycles, latencyMillis,
+                        tracker.percentile(50, 0) / 1000.0,
+                        tracker.percentile(95, 0) / 1000.0,
+                        tracker.percentile(100, 0) / 1000.0));
+                if (mode == SensorClient.NeighbourMode.PREFETCH) {
+                    results.append(String.format(" freshHits=%d staleHits=%d misses=%d",
+                            prefetcher.getFreshHits() - freshHits,
+                            prefetcher.getStaleHits() - staleHits,
+                            prefetcher.getMisses() - misses));
+                }
+                results.append(System.lineSeparator());
+            }
+
+            client.shutdown();
+            System.out.print(results);
+        }
+        System.exit(0);
+    }
+}
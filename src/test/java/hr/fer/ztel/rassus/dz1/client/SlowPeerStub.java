@@ -0,0 +1,105 @@
+package hr.fer.ztel.rassus.dz1.client;
+
+import com.google.gson.Gson;
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.GET_MEASUREMENT_KEYWORD;
+
+/**
+ * Stub of a neighbouring sensor used by benchmarks. It answers every
+ * measurement request with a fixed measurement, but delays a random
+ * fraction of the answers to simulate a peer with a slow tail.
+ */
+public class SlowPeerStub implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final String response;
+    /** Probability that an answer is delayed. */
+    private final double slowProbability;
+    /** Delay of a slow answer, in milliseconds. */
+    private final long slowMillis;
+    private final Random random;
+    /** Number of delayed answers. */
+    private final AtomicInteger slowAnswers = new AtomicInteger();
+
+    /**
+     * Starts the stub on a free local port.
+     *
+     * @param measurement     measurement the stub answers with
+     * @param slowProbability probability that an answer is delayed
+     * @param slowMillis      delay of a slow answer, in milliseconds
+     * @param seed            seed of the random delays
+     * @throws IOException if the stub can not be started
+     */
+    public SlowPeerStub(Measurement measurement, double slowProbability, long slowMillis, long seed) throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        this.response = new Gson().toJson(measurement);
+        this.slowProbability = slowProbability;
+        this.slowMillis = slowMillis;
+        this.random = new Random(seed);
+
+        Thread acceptor = new Thread(this::acceptClients, "SlowPeerStub-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> serve(socket), "SlowPeerStub-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private void serve(Socket clientSocket) {
+        try (Socket socket = clientSocket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+
+            for (String line; (line = in.readLine()) != null; ) {
+                if (!line.equals(GET_MEASUREMENT_KEYWORD)) continue;
+
+                boolean slow;
+                synchronized (random) {
+                    slow = random.nextDouble() < slowProbability;
+                }
+                if (slow) {
+                    slowAnswers.incrementAndGet();
+                    Thread.sleep(slowMillis);
+                }
+                out.println(response);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client has gone away
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSlowAnswers() {
+        return slowAnswers.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,226 @@
+package hr.fer.ztel.rassus.dz1.client;
+
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+import hr.fer.ztel.rassus.dz1.client.thread.ServerThread;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Startup benchmark of the executable sensor client console, also used as
+ * the training run of its AppCDS archive.
+ * <p>
+ * Every run starts the console from the executable jar in a new JVM,
+ * against a {@link StubServer} and a neighbouring {@link ServerThread} in
+ * this JVM. The console registers, goes through a few measure cycles in
+ * every neighbour mode and exits. The time from launching the JVM to the
+ * first measurement received by the stub and the resident set size of the
+ * console before it exits are measured.
+ * <p>
+ * With arguments <tt>train &lt;jar&gt; &lt;archive&gt;</tt>, a single run
+ * dumps the AppCDS archive of the console when it exits. Since the console
+ * is started with <tt>-jar</tt>, the archive matches the class path of
+ * <tt>java -XX:SharedArchiveFile=&lt;archive&gt; -jar &lt;jar&gt;</tt>.
+ * <p>
+ * With arguments <tt>compare &lt;jar&gt; &lt;archive&gt; [runs]</tt>, the
+ * console is run with and without the archive, and the medians of both are
+ * printed.
+ */
+public class StartupBenchmark {
+
+    /** Commands given to the console in every run, before it is asked to exit. */
+    private static final String CONSOLE_COMMANDS = String.join("\n",
+            "MEASURE", "MEASURE", "PUSH", "MEASURE", "PREFETCH", "MEASURE", "HISTORY", "STATS", "");
+    /** Output of the last console command, after which the console is measured and asked to exit. */
+    private static final String LAST_COMMAND_OUTPUT = "Hedging:";
+    /** Default number of runs with and without the archive. */
+    private static final int DEFAULT_RUNS = 5;
+    /** Maximum duration of a single run, in milliseconds. */
+    private static final long RUN_TIMEOUT_MILLIS = 60_000;
+    /** Prefix of the lines with results. */
+    private static final String RESULT_PREFIX = "StartupBenchmark:";
+
+    /** Disable instantiation. */
+    private StartupBenchmark() {}
+
+    /**
+     * Benchmark entry point.
+     *
+     * @param args <tt>train &lt;jar&gt; &lt;archive&gt;</tt> or
+     *             <tt>compare &lt;jar&gt; &lt;archive&gt; [runs]</tt>
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3 || !Arrays.asList("train", "compare").contains(args[0].toLowerCase())) {
+            System.err.println("Usage: StartupBenchmark train <jar> <archive>");
+            System.err.println("       StartupBenchmark compare <jar> <archive> [runs]");
+            System.exit(1);
+        }
+
+        ServerThread neighbour = new ServerThread("localhost", StubServer.getFreePort(),
+                new MeasurementHistory(16), new MeasurementHistory(16));
+        neighbour.setDaemon(true);
+        neighbour.start();
+        Sensor neighbourSensor = new Sensor("localhost", neighbour.getPort());
+
+        String jar = args[1];
+        String archive = args[2];
+        if (args[0].equalsIgnoreCase("train")) {
+            Result result = run(jar, neighbourSensor, "-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=error");
+            if (!new File(archive).isFile()) {
+                throw new IOException("AppCDS archive was not dumped: " + archive);
+            }
+            System.out.println(RESULT_PREFIX + " training run: " + result);
+        } else {
+            int runs = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_RUNS;
+            compare(jar, archive, neighbourSensor, runs);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs the console with and without the archive and prints the medians
+     * of their results.
+     */
+    private static void compare(String jar, String archive, Sensor neighbour, int runs)
+            throws IOException, InterruptedException {
+        if (!new File(archive).isFile()) {
+            throw new IOException("AppCDS archive does not exist: " + archive);
+        }
+
+        for (boolean withArchive : new boolean[] {false, true}) {
+            List<Long> firstMeasurementMillis = new ArrayList<>();
+            List<Long> rssKb = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                Result result = withArchive
+                        ? run(jar, neighbour, "-XX:SharedArchiveFile=" + archive)
+                        : run(jar, neighbour);
+                firstMeasurementMillis.add(result.firstMeasurementMillis);
+                rssKb.add(result.rssKb);
+            }
+
+            System.out.println(RESULT_PREFIX + (withArchive ? " with archive:    " : " without archive: ")
+                    + "firstMeasurementMillis=" + median(firstMeasurementMillis) + " " + firstMeasurementMillis
+                    + " rssKb=" + median(rssKb) + " " + rssKb);
+        }
+    }
+
+    /**
+     * Runs the console from the jar in a new JVM with the specified options,
+     * against a new server stub and the specified neighbour.
+     */
+    private static Result run(String jar, Sensor neighbour, String... jvmOptions)
+            throws IOException, InterruptedException {
+        try (StubServer server = new StubServer()) {
+            server.setClosestSensor(neighbour);
+
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(Arrays.asList(jvmOptions));
+            command.addAll(Arrays.asList("-jar", jar,
+                    "localhost", Integer.toString(StubServer.getFreePort()),
+                    "localhost", Integer.toString(server.getPort())));
+
+            long launchTime = System.currentTimeMillis();
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            Thread watchdog = new Thread(() -> {
+                try {
+                    Thread.sleep(RUN_TIMEOUT_MILLIS);
+                    process.destroyForcibly();
+                } catch (InterruptedException ignorable) {}
+            });
+            watchdog.setDaemon(true);
+            watchdog.start();
+
+            Result result = new Result();
+            try (OutputStream in = process.getOutputStream();
+                 BufferedReader out = new BufferedReader(
+                         new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                in.write(CONSOLE_COMMANDS.getBytes(StandardCharsets.UTF_8));
+                in.flush();
+
+                boolean exited = false;
+                for (String line; (line = out.readLine()) != null; ) {
+                    if (!exited && line.contains(LAST_COMMAND_OUTPUT)) {
+                        // Measure the console while it is still running
+                        long pid = getPid(process);
+                        result.rssKb = getStatusKb(pid, "VmRSS");
+                        result.peakRssKb = getStatusKb(pid, "VmHWM");
+                        in.write("EXIT\n".getBytes(StandardCharsets.UTF_8));
+                        in.flush();
+                        exited = true;
+                    }
+                }
+            }
+
+            int exitCode = process.waitFor();
+            watchdog.interrupt();
+            if (exitCode != 0 || server.getFirstMeasurementTime() == 0) {
+                throw new IOException("Console exited with code " + exitCode + " without a measurement: " + command);
+            }
+            result.firstMeasurementMillis = server.getFirstMeasurementTime() - launchTime;
+            return result;
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * Returns the process id of the process, or -1 if it is not available
+     * on this Java version.
+     */
+    private static long getPid(Process process) {
+        try {
+            return (Long) Process.class.getMethod("pid").invoke(process);
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the specified memory value of the process in kilobytes, or -1
+     * if it is not available on this platform.
+     */
+    private static long getStatusKb(long pid, String name) {
+        if (pid < 0) return -1;
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith(name + ":")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ignorable) {}
+        return -1;
+    }
+
+    /**
+     * Results of a single run.
+     */
+    private static class Result {
+        /** Time from launching the JVM to the first measurement received by the stub, in milliseconds. */
+        private long firstMeasurementMillis;
+        /** Resident set size of the console before it exits, in kilobytes. */
+        private long rssKb = -1;
+        /** Peak resident set size of the console, in kilobytes. */
+        private long peakRssKb = -1;
+
+        @Override
+        public String toString() {
+            return "firstMeasurementMillis=" + firstMeasurementMillis + " rssKb=" + rssKb + " peakRssKb=" + peakRssKb;
+        }
+    }
+}
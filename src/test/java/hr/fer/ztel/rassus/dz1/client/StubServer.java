@@ -0,0 +1,97 @@
+package hr.fer.ztel.rassus.dz1.client;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stub of the measurement server used by tests and benchmarks.
+ * It accepts every registration, answers with a configurable closest sensor
+ * and counts uploaded measurements.
+ */
+public class StubServer implements Closeable {
+
+    private final HttpServer server;
+    /** Sensor returned as the closest one, or <tt>null</tt> if there is none. */
+    private volatile Sensor closestSensor;
+    /** Number of uploaded measurements. */
+    private final AtomicInteger measurements = new AtomicInteger();
+    /** Time of the first uploaded measurement, or 0 if none was uploaded yet. */
+    private final AtomicLong firstMeasurementTime = new AtomicLong();
+
+    /**
+     * Starts the stub on a free local port.
+     *
+     * @throws IOException if the stub can not be started
+     */
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) {
+                    // Discard the request
+                }
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            String response = "true";
+            if (path.endsWith("/closest")) {
+                Sensor sensor = closestSensor;
+                response = sensor != null ? new Gson().toJson(sensor) : "null";
+            } else if (path.endsWith("/measurements")) {
+                firstMeasurementTime.compareAndSet(0, System.currentTimeMillis());
+                measurements.incrementAndGet();
+            }
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void setClosestSensor(Sensor closestSensor) {
+        this.closestSensor = closestSensor;
+    }
+
+    public int getMeasurements() {
+        return measurements.get();
+    }
+
+    public long getFirstMeasurementTime() {
+        return firstMeasurementTime.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Returns a local port that is currently free.
+     *
+     * @return a free local port
+     * @throws IOException if no port can be obtained
+     */
+    public static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
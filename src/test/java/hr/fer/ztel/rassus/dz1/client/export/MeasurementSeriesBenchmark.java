@@ -0,0 +1,179 @@
+package hr.fer.ztel.rassus.dz1.client.export;
+
+import hr.fer.ztel.rassus.dz1.client.loader.MeasurementCSVLoader;
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory.Sample;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comparison of the size and the write and read speed of the measurement
+ * series export against CSV with a timestamp column, for the bundled
+ * measurements and a synthetic series.
+ * <p>
+ * Both formats are written to and read from memory, so the times do not
+ * include disk I/O. Every run is verified to round-trip.
+ * <p>
+ * Run with
+ * <tt>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=hr.fer.ztel.rassus.dz1.client.export.MeasurementSeriesBenchmark
+ * -Dexec.args="[syntheticRows] [runs]"</tt>.
+ */
+public class MeasurementSeriesBenchmark {
+
+    /** Default number of rows of the synthetic series. */
+    private static final int DEFAULT_SYNTHETIC_ROWS = 1_000_000;
+    /** Default number of timed runs, of which the fastest is reported. */
+    private static final int DEFAULT_RUNS = 5;
+    /** Interval between two regular measurements, in milliseconds. */
+    private static final long MEASUREMENT_INTERVAL_MILLIS = 1000;
+
+    /** Disable instantiation. */
+    private MeasurementSeriesBenchmark() {}
+
+    /**
+     * Benchmark entry point.
+     *
+     * @param args number of rows of the synthetic series and number of timed runs
+     */
+    public static void main(String[] args) throws IOException {
+        int syntheticRows = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_SYNTHETIC_ROWS;
+        int runs = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+
+        List<Measurement> bundled = new MeasurementCSVLoader().getMeasurements();
+        List<Sample> bundledSamples = new ArrayList<>();
+        long timestamp = System.currentTimeMillis();
+        for (Measurement measurement : bundled) {
+            bundledSamples.add(new Sample(timestamp, measurement));
+            timestamp += MEASUREMENT_INTERVAL_MILLIS;
+        }
+
+        compare("bundled", bundledSamples, runs);
+        compare("synthetic", generate(syntheticRows, new Random(42)), runs);
+    }
+
+    private static void compare(String name, List<Sample> samples, int runs) throws IOException {
+        long seriesWrite = Long.MAX_VALUE, seriesRead = Long.MAX_VALUE;
+        long csvWrite = Long.MAX_VALUE, csvRead = Long.MAX_VALUE;
+        byte[] series = null, csv = null;
+
+        // An extra untimed run warms up both formats
+        for (int run = 0; run <= runs; run++) {
+            long start = System.nanoTime();
+            series = writeSeries(samples);
+            long written = System.nanoTime();
+            List<Sample> read = readSeries(series);
+            long end = System.nanoTime();
+            verify(samples, read);
+            if (run > 0) {
+                seriesWrite = Math.min(seriesWrite, written - start);
+                seriesRead = Math.min(seriesRead, end - written);
+            }
+
+            start = System.nanoTime();
+            csv = writeCSV(samples);
+            written = System.nanoTime();
+            read = readCSV(csv);
+            end = System.nanoTime();
+            verify(samples, read);
+            if (run > 0) {
+                csvWrite = Math.min(csvWrite, written - start);
+                csvRead = Math.min(csvRead, end - written);
+            }
+        }
+
+        System.out.printf("%s (%,d rows)%n", name, samples.size());
+        System.out.printf("  series: %,12d B (%.2f B/row) write %8.1f ms read %8.1f ms%n",
+                series.length, series.length / (double) samples.size(), seriesWrite / 1e6, seriesRead / 1e6);
+        System.out.printf("  csv:    %,12d B (%.2f B/row) write %8.1f ms read %8.1f ms%n",
+                csv.length, csv.length / (double) samples.size(), csvWrite / 1e6, csvRead / 1e6);
+        System.out.printf("  ratio:  %.2fx smaller, write %.2fx, read %.2fx faster%n",
+                csv.length / (double) series.length, csvWrite / (double) seriesWrite, csvRead / (double) seriesRead);
+    }
+
+    /**
+     * Generates a series shaped like the bundled measurements, mostly evenly
+     * spaced with some retries and manual measurements in between.
+     */
+    private static List<Sample> generate(int rows, Random random) {
+        List<Sample> samples = new ArrayList<>(rows);
+        long timestamp = System.currentTimeMillis();
+        int temperature = 20, pressure = 1000, humidity = 50;
+        for (int i = 0; i < rows; i++) {
+            timestamp += random.nextInt(10) == 0 ? random.nextInt((int) MEASUREMENT_INTERVAL_MILLIS) : MEASUREMENT_INTERVAL_MILLIS;
+            temperature += random.nextInt(3) - 1;
+            pressure += random.nextInt(3) - 1;
+            humidity = Math.max(0, Math.min(100, humidity + random.nextInt(5) - 2));
+            samples.add(new Sample(timestamp, Measurement.builder()
+                    .temperature(temperature)
+                    .pressure(pressure)
+                    .humidity(humidity)
+                    .co(random.nextInt(4) == 0 ? null : 50 + random.nextInt(150))
+                    .no2(random.nextInt(2) == 0 ? null : 200 + random.nextInt(500))
+                    .so2(random.nextInt(5) == 0 ? random.nextInt(30) : null)
+                    .build()));
+        }
+        return samples;
+    }
+
+    private static byte[] writeSeries(List<Sample> samples) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MeasurementSeriesWriter writer = new MeasurementSeriesWriter(out)) {
+            for (Sample sample : samples) {
+                writer.write(sample.getTimestamp(), sample.getMeasurement());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Sample> readSeries(byte[] bytes) throws IOException {
+        try (MeasurementSeriesReader reader = new MeasurementSeriesReader(new ByteArrayInputStream(bytes))) {
+            return reader.readAll();
+        }
+    }
+
+    private static byte[] writeCSV(List<Sample> samples) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write("Timestamp,Temperature,Pressure,Humidity,CO,NO2,SO2,\n");
+            for (Sample sample : samples) {
+                writer.write(Long.toString(sample.getTimestamp()));
+                writer.write(',');
+                writer.write(sample.getMeasurement().serializeToCSV());
+                writer.write('\n');
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Sample> readCSV(byte[] bytes) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+            reader.readLine(); // skip header
+            for (String line; (line = reader.readLine()) != null; ) {
+                int comma = line.indexOf(',');
+                samples.add(new Sample(Long.parseLong(line.substring(0, comma)),
+                        Measurement.parseFromCSV(line.substring(comma + 1))));
+            }
+        }
+        return samples;
+    }
+
+    private static void verify(List<Sample> expected, List<Sample> actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Series does not round-trip");
+        }
+    }
+}
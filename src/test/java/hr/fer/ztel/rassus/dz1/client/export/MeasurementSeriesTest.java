@@ -0,0 +1,176 @@
+package hr.fer.ztel.rassus.dz1.client.export;
+
+import hr.fer.ztel.rassus.dz1.client.loader.MeasurementCSVLoader;
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory.Sample;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeasurementSeriesTest {
+
+    @Test
+    void bundledMeasurementsRoundTrip() throws IOException {
+        List<Measurement> measurements = new MeasurementCSVLoader().getMeasurements();
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < measurements.size(); i++) {
+            samples.add(new Sample(1_500_000_000_000L + i * 1000L, measurements.get(i)));
+        }
+
+        assertEquals(samples, roundTrip(samples, MeasurementSeriesWriter.DEFAULT_BLOCK_SIZE));
+    }
+
+    @Test
+    void irregularSyntheticSeriesRoundTripsAcrossBlocks() throws IOException {
+        List<Sample> samples = generate(10_000, new Random(42));
+
+        assertEquals(samples, roundTrip(samples, 1000));
+    }
+
+    @Test
+    void emptySeriesRoundTrips() throws IOException {
+        assertTrue(roundTrip(new ArrayList<>(), 16).isEmpty());
+    }
+
+    @Test
+    void blockHeaderSummarizesBlock() throws IOException {
+        List<Sample> samples = Arrays.asList(
+                new Sample(100, Measurement.builder().temperature(20).pressure(1000).humidity(40).co(5).build()),
+                new Sample(250, Measurement.builder().temperature(-3).pressure(1010).humidity(45).build()),
+                new Sample(260, Measurement.builder().temperature(7).pressure(990).humidity(50).co(9).build()));
+
+        try (MeasurementSeriesReader reader = new MeasurementSeriesReader(new ByteArrayInputStream(write(samples, 16)))) {
+            MeasurementSeriesReader.Block block = reader.nextBlock();
+            assertEquals(3, block.getRows());
+            assertEquals(100, block.getMinTimestamp());
+            assertEquals(260, block.getMaxTimestamp());
+            assertEquals(-3, (int) block.getMin(MeasurementField.TEMPERATURE));
+            assertEquals(20, (int) block.getMax(MeasurementField.TEMPERATURE));
+            assertEquals(2, block.getCount(MeasurementField.CO));
+            assertEquals(0, block.getCount(MeasurementField.SO2));
+            assertNull(block.getMin(MeasurementField.SO2));
+
+            // The next block is reached without reading the payload
+            assertNull(reader.nextBlock());
+        }
+    }
+
+    @Test
+    void truncatedSeriesIsRejected() throws IOException {
+        byte[] bytes = write(generate(100, new Random(7)), 1000);
+        // A series cut right after its header is a valid empty series
+        int headerLength = write(new ArrayList<>(), 1000).length;
+
+        for (int length = bytes.length - 1; length > headerLength; length -= 7) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> roundTrip(truncated), "Truncated to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void corruptPayloadIsRejected() throws IOException {
+        byte[] bytes = write(generate(100, new Random(7)), 1000);
+        // Continuation bits without an end make an overlong varint
+        Arrays.fill(bytes, bytes.length - 40, bytes.length, (byte) 0xFF);
+
+        assertThrows(IOException.class, () -> roundTrip(bytes));
+    }
+
+    @Test
+    void countsMustAgreeWithRowsAndNullBitmaps() throws IOException {
+        // Single row with all required fields and CO
+        assertEquals(1, roundTrip(singleRowBlock(1, 1, 0b1, 0b0)).size());
+
+        // Required field missing from the header
+        assertThrows(IOException.class, () -> roundTrip(singleRowBlock(0, 1, 0b1, 0b0)));
+        // CO counted in the header, but absent from its null bitmap
+        assertThrows(IOException.class, () -> roundTrip(singleRowBlock(1, 1, 0b0, 0b0)));
+        // NO2 present in its null bitmap, but not counted in the header
+        assertThrows(IOException.class, () -> roundTrip(singleRowBlock(1, 1, 0b1, 0b1)));
+    }
+
+    /**
+     * Writes a series with a single block of one row, with the specified
+     * header count of required fields and of CO, and null bitmaps of CO and
+     * NO2. SO2 is absent.
+     */
+    private static byte[] singleRowBlock(int requiredCount, int coCount, int coBits, int no2Bits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DataOutputStream(out).writeInt(MeasurementSeriesWriter.MAGIC);
+        out.write(MeasurementSeriesWriter.VERSION);
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Varints.writeSigned(payload, 0); // timestamp
+        payload.write(coBits);
+        payload.write(no2Bits);
+        payload.write(0); // SO2
+        for (int i = 0; i < 4; i++) {
+            Varints.writeSigned(payload, 0); // temperature, pressure, humidity and CO at their minimum
+        }
+
+        Varints.writeUnsigned(out, 1); // rows
+        Varints.writeSigned(out, 1000);
+        Varints.writeSigned(out, 1000);
+        for (MeasurementField field : MeasurementField.values()) {
+            int count = !field.isOptional() ? requiredCount : field == MeasurementField.CO ? coCount : 0;
+            Varints.writeUnsigned(out, count);
+            if (count == 0) continue;
+            Varints.writeSigned(out, 10); // min
+            Varints.writeSigned(out, 10); // max
+        }
+        Varints.writeUnsigned(out, payload.size());
+        payload.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static List<Sample> generate(int count, Random random) {
+        List<Sample> samples = new ArrayList<>();
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            // Mostly regular spacing, with retries and manual measurements in between
+            timestamp += random.nextInt(10) == 0 ? random.nextInt(5000) : 1000;
+            samples.add(new Sample(timestamp, Measurement.builder()
+                    .temperature(20 + random.nextInt(10) - 5)
+                    .pressure(1000 + random.nextInt(40))
+                    .humidity(random.nextInt(100))
+                    .co(random.nextBoolean() ? random.nextInt(300) : null)
+                    .no2(random.nextInt(3) == 0 ? null : random.nextInt(1000))
+                    .so2(random.nextInt(4) == 0 ? -random.nextInt(50) : null)
+                    .build()));
+        }
+        return samples;
+    }
+
+    private static byte[] write(List<Sample> samples, int blockSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MeasurementSeriesWriter writer = new MeasurementSeriesWriter(out, blockSize)) {
+            for (Sample sample : samples) {
+                writer.write(sample.getTimestamp(), sample.getMeasurement());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Sample> roundTrip(List<Sample> samples, int blockSize) throws IOException {
+        return roundTrip(write(samples, blockSize));
+    }
+
+    private static List<Sample> roundTrip(byte[] bytes) throws IOException {
+        try (MeasurementSeriesReader reader = new MeasurementSeriesReader(new ByteArrayInputStream(bytes))) {
+            return reader.readAll();
+        }
+    }
+}
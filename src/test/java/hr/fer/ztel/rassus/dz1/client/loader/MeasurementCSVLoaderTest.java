@@ -0,0 +1,128 @@
+package hr.fer.ztel.rassus.dz1.client.loader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeasurementCSVLoaderTest {
+
+    private static final String HEADER = "Temperature,Pressure,Humidity,CO,NO2,SO2,";
+    /** Maximum time a test waits for the watched file to be reloaded, in milliseconds. */
+    private static final long RELOAD_TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bundledMeasurementsWrapAround() {
+        MeasurementCSVLoader loader = new MeasurementCSVLoader();
+        int size = loader.getMeasurements().size();
+
+        assertTrue(size > 0);
+        assertEquals(loader.getMeasurement(0), loader.getMeasurement(size));
+    }
+
+    @Test
+    void headerOnlyFileIsRejectedOnFirstLoad() throws IOException {
+        Path file = write("measurements.csv", HEADER);
+        MeasurementCSVLoader loader = new MeasurementCSVLoader(file.toString());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, loader::getMeasurements);
+        assertTrue(e.getMessage().contains(file.getFileName().toString()));
+        assertThrows(IllegalStateException.class, () -> loader.getMeasurement(0));
+    }
+
+    @Test
+    void emptyFileIsRejectedOnFirstLoad() throws IOException {
+        Path file = write("measurements.csv", "");
+        MeasurementCSVLoader loader = new MeasurementCSVLoader(file.toString());
+
+        assertThrows(IllegalStateException.class, loader::getMeasurements);
+    }
+
+    @Test
+    void rewrittenFileIsReloaded() throws IOException, InterruptedException {
+        Path file = write("measurements.csv", HEADER + "\n32,1000,42,70,676,,\n");
+        MeasurementCSVLoader loader = new MeasurementCSVLoader(file.toString());
+        assertEquals(1, loader.getMeasurements().size());
+        loader.watch();
+        try {
+            write("measurements.csv", HEADER + "\n32,1000,42,70,676,,\n33,1001,43,71,,5,\n");
+
+            awaitSize(loader, 2);
+            assertEquals(33, loader.getMeasurement(1).getTemperature());
+            assertEquals(5, loader.getMeasurement(1).getSo2());
+        } finally {
+            loader.stopWatching();
+        }
+    }
+
+    @Test
+    void fileWrittenInPartsIsReloadedOnce() throws IOException, InterruptedException {
+        Path file = write("measurements.csv", HEADER + "\n32,1000,42,70,676,,\n33,1001,43,71,,5,\n");
+        MeasurementCSVLoader loader = new MeasurementCSVLoader(file.toString());
+        assertEquals(2, loader.getMeasurements().size());
+        loader.watch();
+        try {
+            // Write cut off at a line boundary, completed shortly after
+            write("measurements.csv", HEADER + "\n32,1000,42,70,676,,\n");
+            Thread.sleep(100);
+            write("measurements.csv", HEADER + "\n32,1000,42,70,676,,\n33,1001,43,71,,5,\n34,1002,44,72,,6,\n");
+
+            long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+            while (loader.getMeasurements().size() != 3 && System.currentTimeMillis() < deadline) {
+                assertNotEquals(1, loader.getMeasurements().size(), "Truncated file was loaded");
+                Thread.sleep(10);
+            }
+            assertEquals(3, loader.getMeasurements().size());
+        } finally {
+            loader.stopWatching();
+        }
+    }
+
+    @Test
+    void replacedLoaderStopsWatching() throws IOException, InterruptedException {
+        Path file = write("measurements.csv", HEADER + "\n32,1000,42,70,676,,\n");
+        MeasurementCSVLoader loader = new MeasurementCSVLoader(file.toString());
+        loader.watch();
+        assertFalse(getWatcherThreads().isEmpty());
+
+        Loaders.setMeasurementLoader(loader);
+        Loaders.setMeasurementLoader(new MeasurementCSVLoader());
+
+        for (Thread thread : getWatcherThreads()) {
+            thread.join(5000);
+        }
+        assertTrue(getWatcherThreads().isEmpty());
+    }
+
+    private static void awaitSize(MeasurementCSVLoader loader, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RELOAD_TIMEOUT_MILLIS;
+        while (loader.getMeasurements().size() != size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, loader.getMeasurements().size());
+    }
+
+    private Path write(String fileName, String content) throws IOException {
+        return Files.write(directory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Thread> getWatcherThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("MeasurementWatcher") && thread.isAlive())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,108 @@
+package hr.fer.ztel.rassus.dz1.client.loader;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static hr.fer.ztel.rassus.dz1.client.loader.SyntheticMeasurementLoader.NO_VALUE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SyntheticMeasurementLoaderTest {
+
+    /** Number of measurements compared or generated by a test. */
+    private static final int MEASUREMENTS = 10_000;
+
+    @Test
+    void equalArgumentsGiveEqualMeasurements() {
+        SyntheticMeasurementLoader loader = new SyntheticMeasurementLoader(42, 7);
+        SyntheticMeasurementLoader other = new SyntheticMeasurementLoader(42, 7);
+
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            assertEquals(loader.getMeasurement(i), other.getMeasurement(i));
+            assertEquals(loader.getMeasurement(i), other.getMeasurement(7, i));
+        }
+    }
+
+    @Test
+    void sensorsAndSeedsDiverge() {
+        SyntheticMeasurementLoader loader = new SyntheticMeasurementLoader(42, 7);
+
+        assertTrue(countDifferent(loader, 7, new SyntheticMeasurementLoader(42, 8), 8) > MEASUREMENTS / 2);
+        assertTrue(countDifferent(loader, 7, new SyntheticMeasurementLoader(43, 7), 7) > MEASUREMENTS / 2);
+    }
+
+    @Test
+    void exactlyOneOfNo2AndSo2IsPresent() {
+        SyntheticMeasurementLoader loader = new SyntheticMeasurementLoader(7);
+        int no2Count = 0;
+
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            Measurement measurement = loader.getMeasurement(i);
+            assertTrue(measurement.getCo() != null);
+            assertTrue((measurement.getNo2() == null) != (measurement.getSo2() == null), measurement::toString);
+            assertTrue((loader.no2(7, i) == NO_VALUE) != (loader.so2(7, i) == NO_VALUE));
+            if (measurement.getNo2() != null) no2Count++;
+        }
+
+        // Both gases are present in the series
+        assertTrue(no2Count > 0 && no2Count < MEASUREMENTS);
+    }
+
+    @Test
+    void primitiveAccessorsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = getThreadMXBean();
+        SyntheticMeasurementLoader loader = new SyntheticMeasurementLoader(7);
+        long threadId = Thread.currentThread().getId();
+
+        long sum = sumAccessors(loader);
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        sum += sumAccessors(loader);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertNotEquals(0, sum);
+        // Allowance for reading the allocated bytes, far below one object per measurement
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void seriesIsUnbounded() {
+        SyntheticMeasurementLoader loader = new SyntheticMeasurementLoader(7);
+
+        assertEquals(Integer.MAX_VALUE, loader.size());
+        assertThrows(UnsupportedOperationException.class, loader::getMeasurements);
+    }
+
+    private static int countDifferent(SyntheticMeasurementLoader loader, long sensorId,
+                                      SyntheticMeasurementLoader other, long otherSensorId) {
+        int different = 0;
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            if (!loader.getMeasurement(sensorId, i).equals(other.getMeasurement(otherSensorId, i))) {
+                different++;
+            }
+        }
+        return different;
+    }
+
+    private static long sumAccessors(SyntheticMeasurementLoader loader) {
+        long sum = 0;
+        for (long i = 0; i < MEASUREMENTS; i++) {
+            sum += loader.temperature(7, i) + loader.pressure(7, i) + loader.humidity(7, i)
+                    + loader.co(7, i) + loader.no2(7, i) + loader.so2(7, i);
+        }
+        return sum;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Allocated bytes are not available on this JVM");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "Allocated bytes are not available on this JVM");
+        return threads;
+    }
+}
@@ -0,0 +1,31 @@
+package hr.fer.ztel.rassus.dz1.client.proxy;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Faults injected by a {@link FaultInjectionProxy}. All faults are disabled by default.
+ */
+@Builder(toBuilder = true)
+@Getter
+@ToString
+public class FaultConfig {
+
+    /** Configuration without any faults. */
+    public static final FaultConfig NONE = FaultConfig.builder().build();
+
+    /** Delay added before forwarding each chunk of data, in milliseconds. */
+    private final long latencyMillis;
+    /** Maximum random deviation from latency in either direction, in milliseconds. */
+    private final long jitterMillis;
+    /** Maximum number of bytes forwarded per second in each direction, or 0 if unlimited. */
+    private final long bandwidthBytesPerSecond;
+    /** Probability that a connection is dropped before forwarding a chunk. */
+    private final double dropProbability;
+    /** Probability that a new connection is accepted but never forwarded nor closed. */
+    private final double halfOpenProbability;
+    /** Probability that only a part of a chunk is forwarded before the connection is dropped. */
+    private final double partialWriteProbability;
+
+}
@@ -0,0 +1,299 @@
+package hr.fer.ztel.rassus.dz1.client.proxy;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process TCP proxy that forwards connections to a target address while
+ * injecting faults described by a {@link FaultConfig}: latency, jitter,
+ * bandwidth caps, dropped connections, half-open connections and partial
+ * writes. It may be put between two sensors, or between a sensor and the
+ * server, and its configuration may be replaced while it is running.
+ */
+@Log4j2
+@ToString(onlyExplicitlyIncluded = true)
+public class FaultInjectionProxy implements Closeable {
+
+    /** Size of a chunk of data forwarded at once, in bytes. */
+    private static final int CHUNK_SIZE = 4096;
+
+    @Getter @ToString.Include private final String listenAddress;
+    @Getter @ToString.Include private final String targetAddress;
+    @Getter @ToString.Include private final int targetPort;
+    /** Faults injected into new and existing connections. */
+    @Getter @Setter @ToString.Include private volatile FaultConfig config;
+
+    /** Server socket accepting connections to the proxy. */
+    private final ServerSocket serverSocket;
+    /** All sockets opened by the proxy, closed when the proxy is closed. */
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    /** Number of accepted connections. */
+    private final AtomicLong connections = new AtomicLong();
+    /** Number of connections dropped, including partial writes. */
+    private final AtomicLong droppedConnections = new AtomicLong();
+    /** Number of connections left half-open. */
+    private final AtomicLong halfOpenConnections = new AtomicLong();
+    /** Number of forwarded bytes in both directions. */
+    private final AtomicLong forwardedBytes = new AtomicLong();
+
+    /**
+     * Constructs a proxy listening on the specified address and port, which
+     * forwards to the target. Port 0 picks any free port.
+     *
+     * @param listenAddress address the proxy listens on
+     * @param listenPort    port the proxy listens on, or 0 for any free port
+     * @param targetAddress address of the target
+     * @param targetPort    port of the target
+     * @param config        faults to be injected
+     * @throws IOException if the proxy can not listen on the specified port
+     */
+    public FaultInjectionProxy(String listenAddress, int listenPort,
+                               String targetAddress, int targetPort, FaultConfig config) throws IOException {
+        this.listenAddress = listenAddress;
+        this.targetAddress = targetAddress;
+        this.targetPort = targetPort;
+        this.config = config;
+
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(listenAddress, listenPort));
+    }
+
+    /**
+     * Starts accepting connections in a daemon thread.
+     *
+     * @return this proxy
+     */
+    public FaultInjectionProxy start() {
+        startDaemon(this::acceptLoop, "FaultInjectionProxy-" + getPort());
+        log.info("Started {} on port {}", this, getPort());
+        return this;
+    }
+
+    /**
+     * Returns the port the proxy listens on.
+     *
+     * @return the port the proxy listens on
+     */
+    @ToString.Include(name = "port")
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Closes the proxy and all of its connections, including half-open ones.
+     */
+    @Override
+    public void close() {
+        try { serverSocket.close(); } catch (IOException ignorable) {}
+        sockets.forEach(FaultInjectionProxy::closeQuietly);
+        sockets.clear();
+    }
+
+    @ToString.Include(name = "connections")
+    public long getConnections() {
+        return connections.get();
+    }
+
+    @ToString.Include(name = "droppedConnections")
+    public long getDroppedConnections() {
+        return droppedConnections.get();
+    }
+
+    @ToString.Include(name = "halfOpenConnections")
+    public long getHalfOpenConnections() {
+        return halfOpenConnections.get();
+    }
+
+    @ToString.Include(name = "forwardedBytes")
+    public long getForwardedBytes() {
+        return forwardedBytes.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) log.warn("Proxy accept failed", e);
+                continue;
+            }
+            sockets.add(client);
+            connections.incrementAndGet();
+
+            if (chance(config.getHalfOpenProbability())) {
+                // Accept data and never answer nor close the connection
+                halfOpenConnections.incrementAndGet();
+                log.info("Leaving {} half-open", client);
+                startDaemon(() -> discard(client), "FaultInjectionProxy-halfOpen");
+                continue;
+            }
+
+            startDaemon(() -> connect(client), "FaultInjectionProxy-connect");
+        }
+    }
+
+    private void connect(Socket client) {
+        Socket target = new Socket();
+        sockets.add(target);
+        try {
+            target.connect(new InetSocketAddress(targetAddress, targetPort));
+        } catch (IOException e) {
+            log.warn("Proxy unable to connect to {}:{}", targetAddress, targetPort);
+            closeAll(client, target);
+            return;
+        }
+
+        startDaemon(() -> pump(client, target), "FaultInjectionProxy-upstream");
+        startDaemon(() -> pump(target, client), "FaultInjectionProxy-downstream");
+    }
+
+    /**
+     * Forwards data from one socket to the other, injecting faults, until
+     * either socket is closed or the connection is dropped.
+     */
+    private void pump(Socket from, Socket to) {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            InputStream in = from.getInputStream();
+            OutputStream out = to.getOutputStream();
+
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                FaultConfig config = this.config;
+                sleep(config.getLatencyMillis() + jitter(config.getJitterMillis()));
+
+                if (chance(config.getDropProbability())) {
+                    droppedConnections.incrementAndGet();
+                    log.info("Dropping connection {}", from);
+                    break;
+                }
+
+                if (chance(config.getPartialWriteProbability())) {
+                    int written = ThreadLocalRandom.current().nextInt(read);
+                    out.write(buffer, 0, written);
+                    out.flush();
+                    forwardedBytes.addAndGet(written);
+                    droppedConnections.incrementAndGet();
+                    log.info("Dropping connection {} after partial write of {}/{} bytes", from, written, read);
+                    break;
+                }
+
+                out.write(buffer, 0, read);
+                out.flush();
+                forwardedBytes.addAndGet(read);
+                if (config.getBandwidthBytesPerSecond() > 0) {
+                    sleep(read * 1000L / config.getBandwidthBytesPerSecond());
+                }
+            }
+        } catch (SocketException closed) {
+            // Other direction has closed the connection
+        } catch (IOException e) {
+            log.warn("Proxy forwarding failed", e);
+        } finally {
+            closeAll(from, to);
+        }
+    }
+
+    private void discard(Socket client) {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            InputStream in = client.getInputStream();
+            while (in.read(buffer) != -1) {
+                // Discard everything the client sends
+            }
+        } catch (IOException ignorable) {
+        } finally {
+            closeAll(client);
+        }
+    }
+
+    private void closeAll(Socket... toClose) {
+        for (Socket socket : toClose) {
+            closeQuietly(socket);
+            sockets.remove(socket);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try { socket.close(); } catch (IOException ignorable) {}
+    }
+
+    private static void startDaemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static boolean chance(double probability) {
+        return probability > 0 && ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    /**
+     * Returns a uniformly distributed random delay in range
+     * <tt>[-jitterMillis, jitterMillis]</tt>.
+     */
+    private static long jitter(long jitterMillis) {
+        return jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1) : 0;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try { Thread.sleep(millis); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * Runs a fault injection proxy until the standard input is closed.
+     * <p>
+     * Run with
+     * <tt>mvn test-compile exec:java -Dexec.classpathScope=test
+     * -Dexec.mainClass=hr.fer.ztel.rassus.dz1.client.proxy.FaultInjectionProxy
+     * -Dexec.args="&lt;listenPort&gt; &lt;targetAddress&gt; &lt;targetPort&gt; ..."</tt>.
+     *
+     * @param args listen port, target address, target port, latency, jitter,
+     *             bandwidth, drop, half-open and partial write probability
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: FaultInjectionProxy <listenPort> <targetAddress> <targetPort> "
+                    + "[latencyMillis] [jitterMillis] [bandwidthBytesPerSecond] "
+                    + "[dropProbability] [halfOpenProbability] [partialWriteProbability]");
+            return;
+        }
+
+        FaultConfig config = FaultConfig.builder()
+                .latencyMillis(args.length >= 4 ? Long.parseLong(args[3]) : 0)
+                .jitterMillis(args.length >= 5 ? Long.parseLong(args[4]) : 0)
+                .bandwidthBytesPerSecond(args.length >= 6 ? Long.parseLong(args[5]) : 0)
+                .dropProbability(args.length >= 7 ? Double.parseDouble(args[6]) : 0)
+                .halfOpenProbability(args.length >= 8 ? Double.parseDouble(args[7]) : 0)
+                .partialWriteProbability(args.length >= 9 ? Double.parseDouble(args[8]) : 0)
+                .build();
+
+        try (FaultInjectionProxy proxy = new FaultInjectionProxy(
+                "localhost", Integer.parseInt(args[0]), args[1], Integer.parseInt(args[2]), config)) {
+            proxy.start();
+            System.out.println("Proxy running, close standard input to stop.");
+            while (System.in.read() != -1) {
+                System.out.println(proxy);
+            }
+        }
+    }
+}
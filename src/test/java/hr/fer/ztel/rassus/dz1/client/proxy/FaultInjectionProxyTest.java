@@ -0,0 +1,182 @@
+package hr.fer.ztel.rassus.dz1.client.proxy;
+
+import hr.fer.ztel.rassus.dz1.client.SensorClient;
+import hr.fer.ztel.rassus.dz1.client.StubServer;
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+import hr.fer.ztel.rassus.dz1.client.thread.ServerThread;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FaultInjectionProxyTest {
+
+    /** Maximum time a test waits for a response, in milliseconds. */
+    private static final int RESPONSE_TIMEOUT_MILLIS = 5000;
+    /** Number of bytes forwarded to the neighbour that indicate an answered request. */
+    private static final int MIN_ANSWER_BYTES = 40;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Test
+    void latencyIsAddedInBothDirections() throws IOException {
+        FaultInjectionProxy proxy = proxy(echoServer(), FaultConfig.builder().latencyMillis(200).build());
+
+        try (Socket socket = connect(proxy)) {
+            long start = System.nanoTime();
+            socket.getOutputStream().write('x');
+            assertEquals('x', socket.getInputStream().read());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(elapsedMillis >= 400, "Round trip took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    void halfOpenConnectionNeverAnswers() throws IOException {
+        FaultInjectionProxy proxy = proxy(echoServer(), FaultConfig.builder().halfOpenProbability(1).build());
+
+        try (Socket socket = connect(proxy)) {
+            socket.setSoTimeout(500);
+            socket.getOutputStream().write('x');
+
+            assertThrows(SocketTimeoutException.class, () -> socket.getInputStream().read());
+            assertEquals(1, proxy.getHalfOpenConnections());
+            assertEquals(0, proxy.getForwardedBytes());
+        }
+    }
+
+    @Test
+    void partialWriteTruncatesReply() throws IOException {
+        byte[] reply = new byte[100];
+        Arrays.fill(reply, (byte) 'x');
+        FaultInjectionProxy proxy = proxy(replyServer(reply), FaultConfig.builder().partialWriteProbability(1).build());
+
+        try (Socket socket = connect(proxy)) {
+            byte[] received = readAll(socket.getInputStream());
+
+            assertTrue(received.length < reply.length, "Received " + received.length + " bytes");
+            assertArrayEquals(Arrays.copyOf(reply, received.length), received);
+            assertEquals(1, proxy.getDroppedConnections());
+        }
+    }
+
+    @Test
+    void clientFallsBackAndRecovers() throws Exception {
+        int neighbourPort = StubServer.getFreePort();
+        ServerThread neighbour = new ServerThread("localhost", neighbourPort,
+                new MeasurementHistory(16), new MeasurementHistory(16));
+        neighbour.setDaemon(true);
+        neighbour.start();
+        resources.add(neighbour::interrupt);
+
+        StubServer server = new StubServer();
+        resources.add(server);
+        FaultInjectionProxy proxy = proxy(neighbourPort, FaultConfig.builder().dropProbability(1).build());
+        server.setClosestSensor(new Sensor("localhost", proxy.getPort()));
+
+        SensorClient client = new SensorClient("localhost", StubServer.getFreePort(), "localhost", server.getPort());
+        resources.add(client::shutdown);
+        client.registerToServer();
+
+        // Neighbour is unreachable, so the client uploads its own measurement
+        long forwardedBytes = proxy.getForwardedBytes();
+        client.measure();
+        assertTrue(server.getMeasurements() > 0);
+        assertEquals(forwardedBytes, proxy.getForwardedBytes());
+        assertTrue(proxy.getDroppedConnections() > 0);
+
+        // Neighbour is reached again once the faults are cleared
+        proxy.setConfig(FaultConfig.NONE);
+        boolean recovered = false;
+        for (int i = 0; i < 5 && !recovered; i++) {
+            forwardedBytes = proxy.getForwardedBytes();
+            client.measure();
+            recovered = proxy.getForwardedBytes() - forwardedBytes > MIN_ANSWER_BYTES;
+        }
+        assertTrue(recovered);
+    }
+
+    private FaultInjectionProxy proxy(int targetPort, FaultConfig config) throws IOException {
+        FaultInjectionProxy proxy = new FaultInjectionProxy("localhost", 0, "localhost", targetPort, config).start();
+        resources.add(proxy);
+        return proxy;
+    }
+
+    private static Socket connect(FaultInjectionProxy proxy) throws IOException {
+        Socket socket = new Socket("localhost", proxy.getPort());
+        socket.setSoTimeout(RESPONSE_TIMEOUT_MILLIS);
+        return socket;
+    }
+
+    /**
+     * Starts a server that echoes everything it receives.
+     */
+    private int echoServer() throws IOException {
+        return server(socket -> {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            for (int read; (read = in.read()) != -1; ) {
+                out.write(read);
+                out.flush();
+            }
+        });
+    }
+
+    /**
+     * Starts a server that sends the reply to every connection and closes it.
+     */
+    private int replyServer(byte[] reply) throws IOException {
+        return server(socket -> socket.getOutputStream().write(reply));
+    }
+
+    private int server(Handler handler) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0);
+        resources.add(serverSocket);
+        Thread thread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    handler.handle(socket);
+                } catch (IOException ignorable) {}
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return serverSocket.getLocalPort();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private interface Handler {
+        void handle(Socket socket) throws IOException;
+    }
+}
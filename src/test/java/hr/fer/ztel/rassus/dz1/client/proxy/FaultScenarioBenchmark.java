@@ -0,0 +1,151 @@
+package hr.fer.ztel.rassus.dz1.client.proxy;
+
+import hr.fer.ztel.rassus.dz1.client.SensorClient;
+import hr.fer.ztel.rassus.dz1.client.StubServer;
+import hr.fer.ztel.rassus.dz1.client.model.Sensor;
+import hr.fer.ztel.rassus.dz1.client.thread.ServerThread;
+import hr.fer.ztel.rassus.dz1.client.util.LatencyTracker;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+
+/**
+ * Runs measurement cycles of a sensor client under injected network faults.
+ * The client reaches its {@link ServerThread} neighbour and the
+ * {@link StubServer} REST stub through a {@link FaultInjectionProxy} each.
+ * For every scenario the percentiles of <tt>measure()</tt> latency, the
+ * number of cycles that got an answer from the neighbour and the number of
+ * cycles that uploaded a measurement are printed. At the end, the time for
+ * the client to reach its neighbour again after the faults are cleared is
+ * printed.
+ * <p>
+ * Run with
+ * <tt>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=hr.fer.ztel.rassus.dz1.client.proxy.FaultScenarioBenchmark
+ * -Dexec.args="[cycles]"</tt>.
+ */
+public class FaultScenarioBenchmark {
+
+    /** Default number of measured cycles per scenario. */
+    private static final int DEFAULT_CYCLES = 20;
+    /** Number of bytes forwarded to the neighbour that indicate an answered request. */
+    private static final int MIN_ANSWER_BYTES = 40;
+    /** Maximum number of cycles waited for the client to recover. */
+    private static final int MAX_RECOVERY_CYCLES = 100;
+
+    /** Disable instantiation. */
+    private FaultScenarioBenchmark() {}
+
+    /**
+     * Benchmark entry point.
+     *
+     * @param args number of cycles per scenario
+     */
+    public static void main(String[] args) throws Exception {
+        int cycles = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_CYCLES;
+
+        int neighbourPort = StubServer.getFreePort();
+        ServerThread neighbour = new ServerThread("localhost", neighbourPort,
+                new MeasurementHistory(16), new MeasurementHistory(16));
+        neighbour.setDaemon(true);
+        neighbour.start();
+
+        try (StubServer server = new StubServer();
+             FaultInjectionProxy neighbourProxy = new FaultInjectionProxy(
+                     "localhost", 0, "localhost", neighbourPort, FaultConfig.NONE).start();
+             FaultInjectionProxy serverProxy = new FaultInjectionProxy(
+                     "localhost", 0, "localhost", server.getPort(), FaultConfig.NONE).start()) {
+            server.setClosestSensor(new Sensor("localhost", neighbourProxy.getPort()));
+
+            SensorClient client = new SensorClient("localhost", StubServer.getFreePort(), "localhost", serverProxy.getPort());
+            client.registerToServer();
+
+            Scenario[] scenarios = {
+                    new Scenario("baseline", FaultConfig.NONE, FaultConfig.NONE),
+                    new Scenario("latency 50+-50ms",
+                            FaultConfig.builder().latencyMillis(50).jitterMillis(50).build(), FaultConfig.NONE),
+                    new Scenario("bandwidth 100B/s",
+                            FaultConfig.builder().bandwidthBytesPerSecond(100).build(), FaultConfig.NONE),
+                    new Scenario("drop 30%",
+                            FaultConfig.builder().dropProbability(0.3).build(), FaultConfig.NONE),
+                    new Scenario("partial write 30%",
+                            FaultConfig.builder().partialWriteProbability(0.3).build(), FaultConfig.NONE),
+                    new Scenario("REST drop 20%",
+                            FaultConfig.NONE, FaultConfig.builder().dropProbability(0.2).build()),
+                    // Dropping also ends the cached connection, so every new one is half-open
+                    new Scenario("half-open neighbour",
+                            FaultConfig.builder().halfOpenProbability(1).dropProbability(1).build(), FaultConfig.NONE),
+            };
+
+            StringBuilder results = new StringBuilder();
+            for (Scenario scenario : scenarios) {
+                results.append(run(client, server, neighbourProxy, serverProxy, scenario, cycles));
+            }
+
+            // Recovery after the half-open neighbour
+            neighbourProxy.setConfig(FaultConfig.NONE);
+            serverProxy.setConfig(FaultConfig.NONE);
+            long start = System.nanoTime();
+            int recoveryCycles = 0;
+            boolean recovered = false;
+            while (!recovered && recoveryCycles < MAX_RECOVERY_CYCLES) {
+                long forwardedBytes = neighbourProxy.getForwardedBytes();
+                client.measure();
+                recoveryCycles++;
+                recovered = neighbourProxy.getForwardedBytes() - forwardedBytes > MIN_ANSWER_BYTES;
+            }
+            results.append(String.format("recovery: %s after %d ms, %d cycles%n",
+                    recovered ? "reached neighbour" : "not recovered",
+                    (System.nanoTime() - start) / 1_000_000, recoveryCycles));
+
+            client.shutdown();
+            System.out.print(results);
+            System.out.println(neighbourProxy);
+            System.out.println(serverProxy);
+        }
+        System.exit(0);
+    }
+
+    private static String run(SensorClient client, StubServer server, FaultInjectionProxy neighbourProxy,
+                              FaultInjectionProxy serverProxy, Scenario scenario, int cycles) {
+        neighbourProxy.setConfig(scenario.neighbourFaults);
+        serverProxy.setConfig(scenario.serverFaults);
+
+        LatencyTracker tracker = new LatencyTracker(cycles);
+        int answered = 0, uploaded = 0, failed = 0;
+        for (int i = 0; i < cycles; i++) {
+            long forwardedBytes = neighbourProxy.getForwardedBytes();
+            int measurements = server.getMeasurements();
+            long start = System.nanoTime();
+            try {
+                client.measure();
+            } catch (Exception e) {
+                failed++;
+            }
+            tracker.record((System.nanoTime() - start) / 1000);
+
+            if (neighbourProxy.getForwardedBytes() - forwardedBytes > MIN_ANSWER_BYTES) answered++;
+            if (server.getMeasurements() > measurements) uploaded++;
+        }
+
+        return String.format("%-20s p50=%7.1fms p95=%7.1fms max=%7.1fms neighbour=%2d/%d uploaded=%2d/%d failed=%d%n",
+                scenario.name,
+                tracker.percentile(50, 0) / 1000.0,
+                tracker.percentile(95, 0) / 1000.0,
+                tracker.percentile(100, 0) / 1000.0,
+                answered, cycles, uploaded, cycles, failed);
+    }
+
+    /**
+     * Faults injected into the neighbour and server links.
+     */
+    private static class Scenario {
+        private final String name;
+        private final FaultConfig neighbourFaults;
+        private final FaultConfig serverFaults;
+
+        private Scenario(String name, FaultConfig neighbourFaults, FaultConfig serverFaults) {
+            this.name = name;
+            this.neighbourFaults = neighbourFaults;
+            this.serverFaults = serverFaults;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package hr.fer.ztel.rassus.dz1.client.thread;
+
+import com.google.gson.Gson;
+import hr.fer.ztel.rassus.dz1.client.StubServer;
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.util.MeasurementHistory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.BUSY_KEYWORD;
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.GET_HISTORY_KEYWORD;
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.GET_MEASUREMENT_KEYWORD;
+import static hr.fer.ztel.rassus.dz1.client.util.Utility.SUBSCRIBE_MEASUREMENT_KEYWORD;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ServerThreadTest {
+
+    /** Maximum time a test waits for a response, in milliseconds. */
+    private static final int RESPONSE_TIMEOUT_MILLIS = 5000;
+
+    private ServerThread server;
+    private final MeasurementHistory localHistory = new MeasurementHistory(16);
+    private final MeasurementHistory averagedHistory = new MeasurementHistory(16);
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @AfterEach
+    void stopServer() throws IOException, InterruptedException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.interrupt();
+        server.join(5000);
+    }
+
+    @Test
+    void fullQueueIsRejected() throws IOException {
+        start(ServerLimits.builder().maxConnections(1).maxQueuedConnections(1).build());
+
+        // The only worker serves the first connection, the second one waits in the queue
+        Socket served = connect();
+        assertNotEquals(BUSY_KEYWORD, request(served, GET_MEASUREMENT_KEYWORD));
+        connect();
+
+        assertEquals(BUSY_KEYWORD, read(connect()));
+        assertEquals(1, server.getRejectedConnections());
+    }
+
+    @Test
+    void connectionQueuedForTooLongIsRejected() throws IOException, InterruptedException {
+        start(ServerLimits.builder().maxConnections(1).maxQueueWaitMillis(100).build());
+
+        Socket served = connect();
+        assertNotEquals(BUSY_KEYWORD, request(served, GET_MEASUREMENT_KEYWORD));
+        Socket queued = connect();
+        Thread.sleep(300);
+        served.close();
+
+        assertEquals(BUSY_KEYWORD, read(queued));
+        assertEquals(1, server.getRejectedConnections());
+    }
+
+    @Test
+    void requestsOverRateLimitAreRejected() throws IOException {
+        start(ServerLimits.builder().requestsPerSecond(0.001).requestBurst(2).build());
+
+        Socket socket = connect();
+        assertNotEquals(BUSY_KEYWORD, request(socket, GET_MEASUREMENT_KEYWORD));
+        assertNotEquals(BUSY_KEYWORD, request(socket, GET_MEASUREMENT_KEYWORD));
+        assertEquals(BUSY_KEYWORD, request(socket, GET_MEASUREMENT_KEYWORD));
+        assertEquals(1, server.getRateLimitedRequests());
+
+        // Other connections, for example of sensors on the same host, have their own limit
+        assertNotEquals(BUSY_KEYWORD, request(connect(), GET_MEASUREMENT_KEYWORD));
+    }
+
+    @Test
+    void idleConnectionIsClosed() throws IOException {
+        start(ServerLimits.builder().idleTimeoutMillis(200).build());
+
+        Socket socket = connect();
+        assertNotEquals(BUSY_KEYWORD, request(socket, GET_MEASUREMENT_KEYWORD));
+
+        assertNull(new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine());
+        assertEquals(1, server.getIdleConnections());
+    }
+
+    @Test
+    void subscriptionsAreCappedApartFromConnections() throws IOException {
+        start(ServerLimits.builder().maxConnections(1).maxSubscriptions(2).build());
+
+        assertNotEquals(BUSY_KEYWORD, request(connect(), SUBSCRIBE_MEASUREMENT_KEYWORD));
+        assertNotEquals(BUSY_KEYWORD, request(connect(), SUBSCRIBE_MEASUREMENT_KEYWORD));
+        assertEquals(BUSY_KEYWORD, request(connect(), SUBSCRIBE_MEASUREMENT_KEYWORD));
+        assertEquals(2, server.getActiveSubscriptions());
+
+        // Subscriptions do not hold the only connection slot
+        assertNotEquals(BUSY_KEYWORD, request(connect(), GET_MEASUREMENT_KEYWORD));
+    }
+
+    @Test
+    void subscriptionEndsWhenSubscriberDisconnects() throws IOException, InterruptedException {
+        start(ServerLimits.DEFAULT);
+
+        Socket socket = connect();
+        assertNotEquals(BUSY_KEYWORD, request(socket, SUBSCRIBE_MEASUREMENT_KEYWORD));
+        assertEquals(1, server.getActiveSubscriptions());
+
+        socket.close();
+
+        // Noticed between two pushes, without waiting for a push to fail
+        long deadline = System.currentTimeMillis() + 2 * ServerThread.PUSH_INTERVAL_MILLIS;
+        while (server.getActiveSubscriptions() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.getActiveSubscriptions());
+    }
+
+    @Test
+    void connectionResetDoesNotKillWorker() throws IOException, InterruptedException {
+        start(ServerLimits.DEFAULT);
+
+        List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.add(e));
+        try {
+            Socket socket = connect();
+            assertNotEquals(BUSY_KEYWORD, request(socket, GET_MEASUREMENT_KEYWORD));
+            // Closing with linger 0 resets the connection
+            socket.setSoLinger(true, 0);
+            socket.close();
+            Thread.sleep(200);
+
+            assertEquals(Collections.emptyList(), uncaught);
+            assertNotEquals(BUSY_KEYWORD, request(connect(), GET_MEASUREMENT_KEYWORD));
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    @Test
+    void historyRangeIsServed() throws IOException {
+        start(ServerLimits.DEFAULT);
+        for (int i = 0; i < 5; i++) {
+            localHistory.append(i, Measurement.builder().temperature(i).pressure(1000).humidity(50).build());
+            averagedHistory.append(i, Measurement.builder().temperature(10 + i).pressure(1000).humidity(50).build());
+        }
+
+        Socket socket = connect();
+        MeasurementHistory.Sample[] local = getHistory(socket, "LOCAL 1 3");
+        assertEquals(3, local.length);
+        assertEquals(1, local[0].getTimestamp());
+        assertEquals(3, local[2].getMeasurement().getTemperature());
+
+        MeasurementHistory.Sample[] averaged = getHistory(socket, "averaged 4 100");
+        assertEquals(1, averaged.length);
+        assertEquals(14, averaged[0].getMeasurement().getTemperature());
+    }
+
+    @Test
+    void malformedHistoryRequestGetsEmptyHistory() throws IOException {
+        start(ServerLimits.DEFAULT);
+        localHistory.append(0, Measurement.builder().temperature(20).pressure(1000).humidity(50).build());
+
+        Socket socket = connect();
+        assertEquals(0, getHistory(socket, "").length);
+        assertEquals(0, getHistory(socket, "LOCAL 0").length);
+        assertEquals(0, getHistory(socket, "REMOTE 0 100").length);
+        assertEquals(0, getHistory(socket, "LOCAL zero 100").length);
+        assertEquals(0, getHistory(socket, "LOCAL 0 100 200").length);
+
+        // Connection is still served after malformed requests
+        assertEquals(1, getHistory(socket, "LOCAL 0 100").length);
+    }
+
+    private void start(ServerLimits limits) throws IOException {
+        server = new ServerThread("localhost", StubServer.getFreePort(),
+                localHistory, averagedHistory, limits);
+        server.setDaemon(true);
+        server.start();
+        awaitListening();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", server.getPort());
+        socket.setSoTimeout(RESPONSE_TIMEOUT_MILLIS);
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static String request(Socket socket, String command) throws IOException {
+        new PrintWriter(socket.getOutputStream(), true).println(command);
+        return read(socket);
+    }
+
+    private static MeasurementHistory.Sample[] getHistory(Socket socket, String arguments) throws IOException {
+        String response = request(socket, (GET_HISTORY_KEYWORD + " " + arguments).trim());
+        return new Gson().fromJson(response, MeasurementHistory.Sample[].class);
+    }
+
+    private static String read(Socket socket) throws IOException {
+        String response = new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine();
+        assertNotNull(response);
+        return response;
+    }
+
+    /**
+     * Waits until the server accepts connections. The probing connection is
+     * closed at once, so it does not take a worker for long.
+     */
+    private void awaitListening() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                return;
+            } catch (IOException e) {
+                try { Thread.sleep(20); }
+                catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+            }
+        }
+        throw new IOException("Server is not listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,153 @@
+package hr.fer.ztel.rassus.dz1.client.util;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of append and scan throughput of {@link MeasurementHistory}.
+ * A single writer appends measurements while concurrent scanners call
+ * <tt>getLast</tt>, <tt>getRange</tt> and <tt>aggregate</tt> in turn.
+ * <p>
+ * Every field of an appended measurement is derived from its timestamp,
+ * so a sample whose fields do not match its timestamp is a torn read.
+ * Throughput of each operation and the number of torn reads are printed.
+ * <p>
+ * Run with
+ * <tt>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=hr.fer.ztel.rassus.dz1.client.util.MeasurementHistoryBenchmark
+ * -Dexec.args="[seconds] [scanners] [window]"</tt>.
+ */
+public class MeasurementHistoryBenchmark {
+
+    /** Default duration of each phase, in seconds. */
+    private static final int DEFAULT_SECONDS = 5;
+    /** Default number of concurrent scanners. */
+    private static final int DEFAULT_SCANNERS = 3;
+    /** Default number of samples read by a scan. */
+    private static final int DEFAULT_WINDOW = 64;
+    /** Capacity of the benchmarked history. */
+    private static final int CAPACITY = 1024;
+    /** Number of distinct measurements appended, so the writer does not allocate. */
+    private static final int POOL_SIZE = 4096;
+
+    /** Disable instantiation. */
+    private MeasurementHistoryBenchmark() {}
+
+    /**
+     * Benchmark entry point.
+     *
+     * @param args duration of each phase in seconds, number of scanners and scan window
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_SECONDS;
+        int scanners = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_SCANNERS;
+        int window = args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_WINDOW;
+
+        Measurement[] pool = new Measurement[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool[i] = Measurement.builder()
+                    .temperature(i).pressure(i).humidity(i).co(i)
+                    .no2(i % 2 == 0 ? i : null)
+                    .so2(i % 2 == 0 ? null : i)
+                    .build();
+        }
+
+        // Append without readers
+        MeasurementHistory history = new MeasurementHistory(CAPACITY);
+        long appends = runWriter(history, pool, seconds * 1_000_000_000L, new AtomicLong());
+        System.out.printf("append alone:      %,.0f ops/s (%.1f ns/op)%n",
+                appends / (double) seconds, seconds * 1e9 / appends);
+
+        // Append with concurrent scanners
+        MeasurementHistory contended = new MeasurementHistory(CAPACITY);
+        AtomicLong latestTimestamp = new AtomicLong(-1);
+        // Count and total time of each scan operation
+        LongAdder[] counts = {new LongAdder(), new LongAdder(), new LongAdder()};
+        LongAdder[] nanos = {new LongAdder(), new LongAdder(), new LongAdder()};
+        LongAdder samples = new LongAdder(), tornReads = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < scanners; i++) {
+            Thread thread = new Thread(() -> {
+                long time = System.nanoTime();
+                while (time < deadline) {
+                    check(contended.getLast(window), samples, tornReads);
+                    time = record(counts[0], nanos[0], time);
+
+                    long to = latestTimestamp.get();
+                    check(contended.getRange(to - window, to), samples, tornReads);
+                    time = record(counts[1], nanos[1], time);
+
+                    contended.aggregate(MeasurementField.TEMPERATURE, window);
+                    time = record(counts[2], nanos[2], time);
+                }
+            }, "Scanner-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        long contendedAppends = runWriter(contended, pool, deadline - System.nanoTime(), latestTimestamp);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.printf("append contended:  %,.0f ops/s (%d scanners, window %d)%n",
+                contendedAppends / (double) seconds, scanners, window);
+        String[] names = {"getLast", "getRange", "aggregate"};
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("%-18s %,.0f ops/s per scanner (%.1f us/op)%n", names[i] + ":",
+                    counts[i].sum() * 1e9 / nanos[i].sum(), nanos[i].sum() / 1e3 / counts[i].sum());
+        }
+        System.out.printf("samples read:      %,d, torn reads: %d%n", samples.sum(), tornReads.sum());
+    }
+
+    /**
+     * Appends measurements for the specified duration and returns their count.
+     * Every appended timestamp is published to <tt>latestTimestamp</tt>.
+     */
+    private static long runWriter(MeasurementHistory history, Measurement[] pool,
+                                  long durationNanos, AtomicLong latestTimestamp) {
+        long deadline = System.nanoTime() + durationNanos;
+        long timestamp = 0;
+        while (System.nanoTime() < deadline) {
+            // Check the clock only every so often to keep it out of the measurement
+            for (int i = 0; i < 1024; i++, timestamp++) {
+                history.append(timestamp, pool[(int) (timestamp % POOL_SIZE)]);
+                latestTimestamp.lazySet(timestamp);
+            }
+        }
+        return timestamp;
+    }
+
+    /**
+     * Records an operation that started at <tt>start</tt> and returns the current time.
+     */
+    private static long record(LongAdder count, LongAdder nanos, long start) {
+        long end = System.nanoTime();
+        count.increment();
+        nanos.add(end - start);
+        return end;
+    }
+
+    private static void check(List<MeasurementHistory.Sample> read, LongAdder samples, LongAdder tornReads) {
+        for (MeasurementHistory.Sample sample : read) {
+            int expected = (int) (sample.getTimestamp() % POOL_SIZE);
+            Measurement m = sample.getMeasurement();
+            boolean intact = m.getTemperature() == expected
+                    && m.getPressure() == expected
+                    && m.getHumidity() == expected
+                    && m.getCo() == expected
+                    && (expected % 2 == 0
+                        ? m.getNo2() != null && m.getNo2() == expected && m.getSo2() == null
+                        : m.getSo2() != null && m.getSo2() == expected && m.getNo2() == null);
+            if (!intact) tornReads.increment();
+        }
+        samples.add(read.size());
+    }
+}
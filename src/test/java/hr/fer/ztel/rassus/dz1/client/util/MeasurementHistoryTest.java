@@ -0,0 +1,102 @@
+package hr.fer.ztel.rassus.dz1.client.util;
+
+import hr.fer.ztel.rassus.dz1.client.model.Measurement;
+import hr.fer.ztel.rassus.dz1.client.model.MeasurementField;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeasurementHistoryTest {
+
+    @Test
+    void oldestRecordsAreOverwrittenPastCapacity() {
+        MeasurementHistory history = new MeasurementHistory(4);
+        appendAll(history, 10);
+
+        assertEquals(4, history.size());
+        assertEquals(Arrays.asList(6L, 7L, 8L, 9L), timestamps(history.getLast(10)));
+        assertEquals(Arrays.asList(6L, 7L, 8L, 9L), timestamps(history.getRange(0, Long.MAX_VALUE)));
+        assertEquals(9, history.getLast(1).get(0).getMeasurement().getTemperature());
+    }
+
+    @Test
+    void lastSamplesAreOrderedFromOldestToNewest() {
+        MeasurementHistory history = new MeasurementHistory(8);
+        assertTrue(history.getLast(3).isEmpty());
+
+        appendAll(history, 5);
+
+        assertEquals(Arrays.asList(2L, 3L, 4L), timestamps(history.getLast(3)));
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), timestamps(history.getLast(100)));
+        assertTrue(history.getLast(0).isEmpty());
+    }
+
+    @Test
+    void rangeBoundsAreInclusive() {
+        MeasurementHistory history = new MeasurementHistory(8);
+        appendAll(history, 8);
+
+        assertEquals(Arrays.asList(2L, 3L, 4L), timestamps(history.getRange(2, 4)));
+        assertEquals(Arrays.asList(5L), timestamps(history.getRange(5, 5)));
+        assertTrue(history.getRange(4, 2).isEmpty());
+        assertTrue(history.getRange(8, 100).isEmpty());
+    }
+
+    @Test
+    void aggregateSkipsAbsentOptionalFields() {
+        MeasurementHistory history = new MeasurementHistory(8);
+        history.append(0, Measurement.builder().temperature(10).pressure(1000).humidity(40).co(100).no2(5).build());
+        history.append(1, Measurement.builder().temperature(20).pressure(1000).humidity(40).co(200).so2(3).build());
+        history.append(2, Measurement.builder().temperature(30).pressure(1000).humidity(40).co(300).no2(7).build());
+
+        IntSummaryStatistics temperature = history.aggregate(MeasurementField.TEMPERATURE, 3);
+        assertEquals(3, temperature.getCount());
+        assertEquals(20, temperature.getAverage());
+
+        IntSummaryStatistics no2 = history.aggregate(MeasurementField.NO2, 3);
+        assertEquals(2, no2.getCount());
+        assertEquals(5, no2.getMin());
+        assertEquals(7, no2.getMax());
+
+        // Window of the two most recent samples
+        assertEquals(1, history.aggregate(MeasurementField.SO2, 2).getCount());
+        assertEquals(1, history.aggregate(MeasurementField.NO2, 2).getCount());
+    }
+
+    @Test
+    void absentOptionalFieldsStayAbsent() {
+        MeasurementHistory history = new MeasurementHistory(2);
+        Measurement measurement = Measurement.builder().temperature(-5).pressure(990).humidity(80).co(0).so2(4).build();
+        history.append(0, measurement);
+
+        Measurement read = history.getLast(1).get(0).getMeasurement();
+        assertEquals(measurement, read);
+        assertNull(read.getNo2());
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new MeasurementHistory(0));
+    }
+
+    /**
+     * Appends measurements with timestamps and temperatures from 0 to <tt>count</tt>.
+     */
+    private static void appendAll(MeasurementHistory history, int count) {
+        for (int i = 0; i < count; i++) {
+            history.append(i, Measurement.builder().temperature(i).pressure(1000).humidity(50).build());
+        }
+    }
+
+    private static List<Long> timestamps(List<MeasurementHistory.Sample> samples) {
+        return samples.stream().map(MeasurementHistory.Sample::getTimestamp).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,106 @@
+package hr.fer.ztel.rassus.dz1.client.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PrefetcherTest {
+
+    /** Maximum staleness that is never reached by a test, in milliseconds. */
+    private static final long LONG_STALENESS_MILLIS = 60_000;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void latestFetchIsFreshHit() throws Exception {
+        Prefetcher<String> prefetcher = new Prefetcher<>(executor, LONG_STALENESS_MILLIS);
+        prefetcher.schedule(() -> "first", 0);
+        prefetcher.schedule(() -> "second", 0);
+        awaitFetches();
+
+        assertEquals("second", prefetcher.get());
+        assertEquals(1, prefetcher.getFreshHits());
+        assertEquals(0, prefetcher.getStaleHits());
+        assertEquals(0, prefetcher.getMisses());
+    }
+
+    @Test
+    void previousFetchIsStaleHitWhileRefreshIsPending() throws Exception {
+        Prefetcher<String> prefetcher = new Prefetcher<>(executor, LONG_STALENESS_MILLIS);
+        prefetcher.schedule(() -> "first", 0);
+        awaitFetches();
+        prefetcher.schedule(() -> "second", LONG_STALENESS_MILLIS);
+
+        assertEquals("first", prefetcher.get());
+        assertEquals(0, prefetcher.getFreshHits());
+        assertEquals(1, prefetcher.getStaleHits());
+    }
+
+    @Test
+    void failedFetchKeepsPreviousValue() throws Exception {
+        Prefetcher<String> prefetcher = new Prefetcher<>(executor, LONG_STALENESS_MILLIS);
+        prefetcher.schedule(() -> "first", 0);
+        prefetcher.schedule(() -> { throw new IOException("Unreachable"); }, 0);
+        awaitFetches();
+
+        assertEquals("first", prefetcher.get());
+        assertEquals(1, prefetcher.getStaleHits());
+    }
+
+    @Test
+    void missWithoutFetchedValue() {
+        Prefetcher<String> prefetcher = new Prefetcher<>(executor, LONG_STALENESS_MILLIS);
+
+        assertNull(prefetcher.get());
+        assertEquals(1, prefetcher.getMisses());
+        assertEquals(-1, prefetcher.getAgeMillis());
+    }
+
+    @Test
+    void clearedValueIsNotServed() throws Exception {
+        Prefetcher<String> prefetcher = new Prefetcher<>(executor, LONG_STALENESS_MILLIS);
+        prefetcher.schedule(() -> "first", 0);
+        awaitFetches();
+
+        prefetcher.clear();
+
+        assertNull(prefetcher.get());
+        assertEquals(1, prefetcher.getMisses());
+        assertEquals(0, prefetcher.getFreshHits() + prefetcher.getStaleHits());
+    }
+
+    @Test
+    void valueOlderThanMaxStalenessIsNotServed() throws Exception {
+        Prefetcher<String> prefetcher = new Prefetcher<>(executor, 50);
+        prefetcher.schedule(() -> "first", 0);
+        awaitFetches();
+        Thread.sleep(100);
+
+        assertNull(prefetcher.get());
+        assertEquals(1, prefetcher.getMisses());
+
+        // Same value is served again within a longer staleness
+        prefetcher.setMaxStalenessMillis(LONG_STALENESS_MILLIS);
+        assertEquals("first", prefetcher.get());
+        assertEquals(1, prefetcher.getFreshHits());
+    }
+
+    /**
+     * Waits until the fetches scheduled without delay have run.
+     */
+    private void awaitFetches() throws ExecutionException, InterruptedException {
+        executor.submit(() -> {}).get();
+    }
+}